@@ -27,7 +27,7 @@ public class CorsConfig implements WebMvcConfigurer {
         var reg = registry.addMapping("/**")
                 .allowedMethods("GET", "POST", "PATCH", "DELETE", "OPTIONS")
                 .allowedHeaders("*")
-                .exposedHeaders("Location")
+                .exposedHeaders("Location", "ETag")
                 .allowCredentials(allowCredentials)
                 .maxAge(3600);
 
@@ -4,8 +4,13 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.*;
 import ru.itmo.backend.dto.CleanupResponseDto;
+import ru.itmo.backend.dto.CleanupRunStatsDto;
+import ru.itmo.backend.dto.cart.ReservationExpiryStatsDto;
+import ru.itmo.backend.dto.payment.BalanceLedgerSummaryDto;
+import ru.itmo.backend.dto.rental.RentalExpiryStatsDto;
 import ru.itmo.backend.dto.instant.InstantBuyPriceDto;
 import ru.itmo.backend.dto.instant.InstantBuyPriceUpsertRequestDto;
+import ru.itmo.backend.dto.instant.InstantPriceBatchResultDto;
 import ru.itmo.backend.dto.delete.DeletionRequestDto;
 import ru.itmo.backend.dto.delete.RejectDeletionRequestDto;
 import ru.itmo.backend.dto.ticket.TicketDto;
@@ -49,6 +54,13 @@ public class AdminController {
         return adminService.setUserRole(userId, role);
     }
 
+    @GetMapping("/users/{userId}/balance-ledger")
+    public BalanceLedgerSummaryDto balanceLedger(@PathVariable Integer userId,
+                                                 @RequestHeader(value="Authorization", required=false) String authHeader) {
+        adminService.requireAdmin(authHeader);
+        return adminService.getBalanceLedger(userId);
+    }
+
     @GetMapping("/deletion-requests")
     public List<DeletionRequestDto> all(@RequestHeader(value="Authorization", required=false) String authHeader) {
         requireAdmin(authHeader);
@@ -78,6 +90,24 @@ public class AdminController {
                 .build();
     }
 
+    @GetMapping("/reservations/expiry-stats")
+    public ReservationExpiryStatsDto reservationExpiryStats(@RequestHeader(value="Authorization", required=false) String authHeader) {
+        requireAdmin(authHeader);
+        return adminService.getReservationExpiryStats();
+    }
+
+    @GetMapping("/rentals/expiry-stats")
+    public RentalExpiryStatsDto rentalExpiryStats(@RequestHeader(value="Authorization", required=false) String authHeader) {
+        requireAdmin(authHeader);
+        return adminService.getRentalExpiryStats();
+    }
+
+    @GetMapping("/cleanup/stats")
+    public List<CleanupRunStatsDto> cleanupStats(@RequestHeader(value="Authorization", required=false) String authHeader) {
+        requireAdmin(authHeader);
+        return adminService.getCleanupStats();
+    }
+
     @PostMapping("/instant-prices")
     public InstantBuyPriceDto upsert(@Valid @RequestBody InstantBuyPriceUpsertRequestDto dto,
                                      @RequestHeader(value="Authorization", required=false) String authHeader) {
@@ -88,6 +118,16 @@ public class AdminController {
         return adminService.upsertInstantBuyPrice(dto.getSkinId(), admin.getId(), dto.getPrice());
     }
 
+    @PostMapping("/instant-prices/batch")
+    public InstantPriceBatchResultDto upsertBatch(@RequestBody List<InstantBuyPriceUpsertRequestDto> rows,
+                                                  @RequestHeader(value="Authorization", required=false) String authHeader) {
+
+        User admin = authService.requireUser(authHeader);
+        if (admin.getRole() != UserRole.ADMIN) throw new UnauthorizedException("Admin only");
+
+        return adminService.upsertInstantBuyPrices(admin.getId(), rows);
+    }
+
     @GetMapping("/tickets")
     public List<TicketDto> tickets(@RequestHeader(value="Authorization", required=false) String authHeader) {
         adminService.requireAdmin(authHeader);
@@ -5,8 +5,11 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.*;
 import ru.itmo.backend.dto.cart.AddToCartRequest;
 import ru.itmo.backend.dto.cart.CartDto;
+import ru.itmo.backend.dto.cart.CheckoutAllRequest;
+import ru.itmo.backend.dto.cart.CheckoutAllResultDto;
 import ru.itmo.backend.dto.cart.CheckoutItemRequest;
 import ru.itmo.backend.service.CartService;
+import ru.itmo.backend.service.IdempotencyService;
 
 @RestController
 @RequiredArgsConstructor
@@ -31,9 +34,14 @@ public class CartController {
     }
 
     @PostMapping("/checkout-item")
-    public String checkoutItem(@Valid @RequestBody CheckoutItemRequest req) {
-        cartService.checkoutItem(req.getUserId(), req.getCartItemId());
-        return "OK";
+    public String checkoutItem(@Valid @RequestBody CheckoutItemRequest req,
+                               @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return cartService.checkoutItem(req.getUserId(), req.getCartItemId(), idempotencyKey);
+    }
+
+    @PostMapping("/checkout-all")
+    public CheckoutAllResultDto checkoutAll(@Valid @RequestBody CheckoutAllRequest req) {
+        return cartService.checkoutAll(req.getUserId());
     }
 
 }
@@ -2,9 +2,14 @@ package ru.itmo.backend.controller;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.itmo.backend.dto.instant.InstantBuyPriceDto;
 import ru.itmo.backend.dto.market.*;
 import ru.itmo.backend.service.MarketService;
+import ru.itmo.backend.service.MarketStreamService;
 
 import java.util.List;
 import java.util.Map;
@@ -14,18 +19,66 @@ import java.util.Map;
 @RequestMapping("/market")
 public class MarketController {
     private final MarketService marketService;
+    private final MarketStreamService marketStreamService;
 
     @GetMapping("/sale-listings")
-    public List<SaleListingPreviewDto> listSale(@RequestParam(required = false) Integer ownerId) {
+    public List<SaleListingPreviewDto> listSale(@RequestParam(required = false) Integer ownerId, WebRequest request) {
+        if (request.checkNotModified(marketService.getMarketEtag())) {
+            return null;
+        }
         return marketService.getSaleListings(ownerId);
     }
 
+    @GetMapping("/sale-listings/page")
+    public SaleListingPageDto listSalePage(@RequestParam(required = false) Integer skinId,
+                                           @RequestParam(required = false) String rarity,
+                                           @RequestParam(required = false) String collection,
+                                           @RequestParam(required = false) String condition,
+                                           @RequestParam(required = false) Integer minPrice,
+                                           @RequestParam(required = false) Integer maxPrice,
+                                           @RequestParam(required = false) String sort,
+                                           @RequestParam(required = false) String dir,
+                                           @RequestParam(required = false) String cursor,
+                                           @RequestParam(required = false) Integer limit,
+                                           WebRequest request) {
+        if (request.checkNotModified(marketService.getMarketEtag())) {
+            return null;
+        }
+        SaleListingFilter filter = SaleListingFilter.builder()
+                .skinId(skinId)
+                .rarity(rarity)
+                .collection(collection)
+                .condition(condition)
+                .minPrice(minPrice)
+                .maxPrice(maxPrice)
+                .build();
+        return marketService.getActiveSaleListingsPage(filter, sort, dir, cursor, limit);
+    }
+
     @GetMapping("/skins")
     public List<SkinPreviewDto> skins(@RequestParam(required = false) String q,
                                       @RequestParam(required = false) String collection,
                                       @RequestParam(required = false) String rarity,
-                                      @RequestParam(required = false) String condition) {
-        return marketService.getSkins(q, collection, rarity, condition);
+                                      @RequestParam(required = false) String condition,
+                                      @RequestParam(required = false) Integer limit,
+                                      WebRequest request) {
+        if (request.checkNotModified(marketService.getMarketEtag())) {
+            return null;
+        }
+        return marketService.getSkins(q, collection, rarity, condition, limit);
+    }
+
+    @GetMapping("/skins/facets")
+    public SkinFacetsDto skinFacets(@RequestParam(required = false) String q,
+                                    @RequestParam(required = false) String collection,
+                                    @RequestParam(required = false) String rarity,
+                                    @RequestParam(required = false) String condition,
+                                    @RequestParam(defaultValue = "false") boolean withListings,
+                                    WebRequest request) {
+        if (request.checkNotModified(marketService.getMarketEtag())) {
+            return null;
+        }
+        return marketService.getSkinFacets(q, collection, rarity, condition, withListings);
     }
 
     @PostMapping("/sale-listings")
@@ -33,6 +86,21 @@ public class MarketController {
         return marketService.createSaleListing(req);
     }
 
+    @PostMapping("/sale-listings/batch")
+    public SaleListingBatchResultDto createSaleListings(@Valid @RequestBody CreateSaleListingsBatchRequestDto req) {
+        return marketService.createSaleListings(req);
+    }
+
+    @PostMapping("/sale-listings/batch/cancel")
+    public SaleListingBatchResultDto cancelSaleListings(@Valid @RequestBody SaleListingsBatchCancelRequestDto req) {
+        return marketService.cancelSaleListings(req);
+    }
+
+    @PostMapping("/sale-listings/batch/reprice")
+    public SaleListingBatchResultDto repriceSaleListings(@Valid @RequestBody SaleListingsBatchRepriceRequestDto req) {
+        return marketService.repriceSaleListings(req);
+    }
+
     @PostMapping("/sale-listings/{id}/cancel")
     public void cancelSale(@PathVariable Integer id, @RequestParam Integer sellerId) {
         marketService.cancelSaleListing(sellerId, id);
@@ -43,8 +111,28 @@ public class MarketController {
         marketService.instantSell(sellerId, id);
     }
 
+    @GetMapping("/skins/{skinId}/book")
+    public OrderBookDto book(@PathVariable Integer skinId, @RequestParam(required = false) Integer depth) {
+        return marketService.getOrderBook(skinId, depth);
+    }
+
+    @GetMapping("/skins/{skinId}/best-ask")
+    public BestAskDto bestAsk(@PathVariable Integer skinId) {
+        return marketService.getBestAsk(skinId);
+    }
+
     @GetMapping("/skins/{skinId}/instant-price")
     public Map<String, Integer> instantPrice(@PathVariable Integer skinId) {
         return Map.of("price", marketService.getInstantPrice(skinId));
     }
+
+    @GetMapping("/instant-prices")
+    public List<InstantBuyPriceDto> instantPrices(@RequestParam List<Integer> skinIds) {
+        return marketService.getInstantPrices(skinIds);
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestParam(required = false) Integer skinId) {
+        return marketStreamService.subscribe(skinId);
+    }
 }
@@ -1,9 +1,16 @@
 package ru.itmo.backend.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.itmo.backend.dto.payment.CreatePaymentOperationRequest;
 import ru.itmo.backend.dto.payment.PaymentOperationDto;
+import ru.itmo.backend.dto.payment.PaymentOperationPageDto;
+import ru.itmo.backend.dto.payment.PaymentPipelineStatsDto;
+import ru.itmo.backend.service.IdempotencyService;
 import ru.itmo.backend.service.PaymentService;
 
 import java.util.List;
@@ -17,8 +24,14 @@ public class PaymentController {
     private final PaymentService paymentService;
 
     @PostMapping
-    public PaymentOperationDto create(@RequestBody CreatePaymentOperationRequest req) {
-        return paymentService.create(req);
+    public PaymentOperationDto create(@RequestBody CreatePaymentOperationRequest req,
+                                      @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return paymentService.create(req, idempotencyKey);
+    }
+
+    @GetMapping("/pipeline/stats")
+    public PaymentPipelineStatsDto pipelineStats() {
+        return paymentService.getPipelineStats();
     }
 
     @GetMapping("/{id}")
@@ -31,9 +44,29 @@ public class PaymentController {
         return paymentService.getUserOperations(userId);
     }
 
+    @GetMapping("/page")
+    public PaymentOperationPageDto getUserOperationsPage(@RequestParam Integer userId,
+                                                         @RequestParam(required = false) String cursor,
+                                                         @RequestParam(required = false) Integer limit) {
+        return paymentService.getUserOperationsPage(userId, cursor, limit);
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam Integer userId,
+                                                        @RequestParam(defaultValue = "csv") String format) {
+        StreamingResponseBody body = paymentService.exportUserOperations(userId, format);
+        boolean csv = format.equalsIgnoreCase("csv");
+        return ResponseEntity.ok()
+                .contentType(csv ? MediaType.parseMediaType("text/csv") : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"payments-" + userId + (csv ? ".csv" : ".ndjson") + "\"")
+                .body(body);
+    }
+
     @PatchMapping("/{id}/status")
-    public PaymentOperationDto updateStatus(@PathVariable Integer id, @RequestParam String status) {
-        return paymentService.updateStatus(id, status);
+    public PaymentOperationDto updateStatus(@PathVariable Integer id, @RequestParam String status,
+                                            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return paymentService.updateStatus(id, status, idempotencyKey);
     }
 
     @DeleteMapping("/{id}")
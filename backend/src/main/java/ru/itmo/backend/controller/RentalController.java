@@ -3,16 +3,24 @@ package ru.itmo.backend.controller;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.*;
+import ru.itmo.backend.dto.rental.BulkRentRequestDto;
+import ru.itmo.backend.dto.rental.BulkRentResultDto;
 import ru.itmo.backend.dto.rental.RentRequestDto;
 import ru.itmo.backend.dto.rental.RentResponseDto;
 import ru.itmo.backend.dto.rental.RentResult;
+import ru.itmo.backend.dto.rental.RentalBookingDto;
+import ru.itmo.backend.dto.rental.RentalBookingRequestDto;
+import ru.itmo.backend.service.RentalBookingService;
 import ru.itmo.backend.service.RentalService;
 
+import java.util.List;
+
 @RestController
 @RequiredArgsConstructor
 public class RentalController {
 
     private final RentalService rentalService;
+    private final RentalBookingService rentalBookingService;
 
     @PostMapping("/rent")
     public RentResponseDto rent(@Valid @RequestBody RentRequestDto req) {
@@ -25,4 +33,24 @@ public class RentalController {
                 .totalCost(result.getTotalCost())
                 .build();
     }
-}
\ No newline at end of file
+
+    @PostMapping("/rent/bulk")
+    public BulkRentResultDto rentBulk(@Valid @RequestBody BulkRentRequestDto req) {
+        return rentalService.rentBulk(req);
+    }
+
+    @PostMapping("/rent/bookings")
+    public RentalBookingDto book(@Valid @RequestBody RentalBookingRequestDto req) {
+        return rentalBookingService.book(req);
+    }
+
+    @GetMapping("/rent/bookings")
+    public List<RentalBookingDto> bookings(@RequestParam Integer renterId) {
+        return rentalBookingService.getRenterBookings(renterId);
+    }
+
+    @DeleteMapping("/rent/bookings/{id}")
+    public RentalBookingDto cancelBooking(@PathVariable Integer id, @RequestParam Integer renterId) {
+        return rentalBookingService.cancel(id, renterId);
+    }
+}
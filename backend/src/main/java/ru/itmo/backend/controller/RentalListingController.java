@@ -2,12 +2,18 @@ package ru.itmo.backend.controller;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
 import ru.itmo.backend.dto.rental.CreateRentalListingRequestDto;
+import ru.itmo.backend.dto.rental.RentalAvailabilityDto;
 import ru.itmo.backend.dto.rental.RentalListingDto;
+import ru.itmo.backend.dto.rental.RentalListingFilter;
+import ru.itmo.backend.dto.rental.RentalListingPageDto;
+import ru.itmo.backend.dto.rental.RentalSlotDto;
+import ru.itmo.backend.service.RentalBookingService;
 import ru.itmo.backend.service.RentalListingService;
-import ru.itmo.backend.service.RentalService;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
@@ -16,11 +22,27 @@ import java.util.List;
 public class RentalListingController {
 
     private final RentalListingService rentalListingService;
-    private final RentalService rentalService;
+    private final RentalBookingService rentalBookingService;
 
     @GetMapping("/rent")
-    public List<RentalListingDto> getRentListings(@RequestParam(required = false) Integer ownerId) {
-        return rentalListingService.getListings(ownerId);
+    public List<RentalListingDto> getRentListings(@RequestParam(required = false) Integer ownerId,
+                                                  @RequestParam(required = false) Integer skinId,
+                                                  @RequestParam(required = false) Integer minPricePerDay,
+                                                  @RequestParam(required = false) Integer maxPricePerDay,
+                                                  @RequestParam(required = false) Integer minDays) {
+        return rentalListingService.getListings(filter(ownerId, skinId, minPricePerDay, maxPricePerDay, minDays));
+    }
+
+    @GetMapping("/rent/page")
+    public RentalListingPageDto getRentListingsPage(@RequestParam(required = false) Integer ownerId,
+                                                    @RequestParam(required = false) Integer skinId,
+                                                    @RequestParam(required = false) Integer minPricePerDay,
+                                                    @RequestParam(required = false) Integer maxPricePerDay,
+                                                    @RequestParam(required = false) Integer minDays,
+                                                    @RequestParam(required = false) String cursor,
+                                                    @RequestParam(required = false) Integer limit) {
+        return rentalListingService.getListingsPage(
+                filter(ownerId, skinId, minPricePerDay, maxPricePerDay, minDays), cursor, limit);
     }
 
     @PostMapping("/rent")
@@ -28,10 +50,37 @@ public class RentalListingController {
         return rentalListingService.createListing(request);
     }
 
+    @GetMapping("/rent/{id}/availability")
+    public RentalAvailabilityDto availability(@PathVariable Integer id,
+                                              @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                              @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        return rentalBookingService.getAvailability(id, from, to);
+    }
+
+    @GetMapping("/rent/{id}/next-free")
+    public RentalSlotDto nextFree(@PathVariable Integer id,
+                                  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                  @RequestParam Integer days) {
+        return rentalBookingService.getNextFree(id, from, days);
+    }
+
     @GetMapping("/listings/rent")
-    public List<RentalListingDto> listRent(@RequestParam(required = false) Integer ownerId) {
-        rentalService.cleanupExpiredRentals();
+    public List<RentalListingDto> listRent(@RequestParam(required = false) Integer ownerId,
+                                           @RequestParam(required = false) Integer skinId,
+                                           @RequestParam(required = false) Integer minPricePerDay,
+                                           @RequestParam(required = false) Integer maxPricePerDay,
+                                           @RequestParam(required = false) Integer minDays) {
+        return rentalListingService.getListings(filter(ownerId, skinId, minPricePerDay, maxPricePerDay, minDays));
+    }
 
-        return rentalService.getAvailableListings(ownerId);
+    private static RentalListingFilter filter(Integer ownerId, Integer skinId, Integer minPricePerDay,
+                                              Integer maxPricePerDay, Integer minDays) {
+        return RentalListingFilter.builder()
+                .ownerId(ownerId)
+                .skinId(skinId)
+                .minPricePerDay(minPricePerDay)
+                .maxPricePerDay(maxPricePerDay)
+                .minMaxDays(minDays)
+                .build();
     }
 }
\ No newline at end of file
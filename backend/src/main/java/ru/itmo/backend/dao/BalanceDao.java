@@ -2,14 +2,42 @@ package ru.itmo.backend.dao;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
+import ru.itmo.backend.dto.payment.BalanceLedgerSummaryDto;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
 
 @Slf4j
 @Repository
 @RequiredArgsConstructor
 public class BalanceDao {
 
+    @lombok.Value
+    public static class Delta {
+        int userId;
+        int delta;
+        String reason;
+        Integer refId;
+    }
+
+    private static final String APPLY_DELTA = """
+        WITH upd AS (
+            UPDATE users
+            SET balance = balance + ?
+            WHERE id = ?
+              AND balance + ? >= 0
+            RETURNING id, balance
+        )
+        INSERT INTO balance_ledger (user_id, delta, balance_after, reason, ref_id, created_at)
+        SELECT id, ?, balance, ?, ?, now()
+        FROM upd
+        """;
+
     private final JdbcTemplate jdbcTemplate;
 
     public boolean checkBalance(int userId, int amount) {
@@ -25,4 +53,86 @@ public class BalanceDao {
         log.info("check_user_balance result={}", ok);
         return ok;
     }
+
+    // изменение баланса и запись в журнал одним оператором: без чтения в Java, без потерянных обновлений.
+    // false — денег не хватило (или пользователя нет), ничего не записано
+    public boolean applyDelta(int userId, int delta, String reason, Integer refId) {
+        return jdbcTemplate.update(APPLY_DELTA, delta, userId, delta, delta, reason, refId) == 1;
+    }
+
+    // то же пачкой в одном JDBC-батче; 0 в ответе — на этой строке денег не хватило
+    public int[] applyDeltas(List<Delta> deltas) {
+        if (deltas.isEmpty()) return new int[0];
+        return jdbcTemplate.batchUpdate(APPLY_DELTA, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Delta d = deltas.get(i);
+                ps.setInt(1, d.getDelta());
+                ps.setInt(2, d.getUserId());
+                ps.setInt(3, d.getDelta());
+                ps.setInt(4, d.getDelta());
+                ps.setString(5, d.getReason());
+                ps.setObject(6, d.getRefId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return deltas.size();
+            }
+        });
+    }
+
+    // сворачивает в снапшоты видимые, ещё не свёрнутые строки журнала и помечает их одним оператором.
+    // строки незакоммиченных транзакций не видны и свернутся в следующий раз, какой бы id у них ни был;
+    // параллельный запуск на другом узле ждёт блокировки строк и пропускает уже помеченные
+    public int rollUpSnapshots() {
+        String sql = """
+            WITH rolled AS (
+                UPDATE balance_ledger
+                SET rolled_up = true
+                WHERE NOT rolled_up
+                RETURNING user_id, id, delta
+            )
+            INSERT INTO balance_snapshots (user_id, ledger_id, net_delta, taken_at)
+            SELECT user_id, MAX(id), SUM(delta), now()
+            FROM rolled
+            GROUP BY user_id
+            ON CONFLICT (user_id) DO UPDATE
+                SET ledger_id = GREATEST(balance_snapshots.ledger_id, EXCLUDED.ledger_id),
+                    net_delta = balance_snapshots.net_delta + EXCLUDED.net_delta,
+                    taken_at = EXCLUDED.taken_at
+            """;
+        return jdbcTemplate.update(sql);
+    }
+
+    // снапшот + хвост журнала после него; полная сумма по журналу не нужна
+    public BalanceLedgerSummaryDto summary(int userId) {
+        String sql = """
+            SELECT
+                u.id,
+                u.balance,
+                s.ledger_id,
+                s.taken_at,
+                COALESCE(s.net_delta, 0) + COALESCE((
+                    SELECT SUM(l.delta)
+                    FROM balance_ledger l
+                    WHERE l.user_id = u.id
+                      AND NOT l.rolled_up
+                ), 0) AS ledger_net
+            FROM users u
+            LEFT JOIN balance_snapshots s ON s.user_id = u.id
+            WHERE u.id = ?
+            """;
+        List<BalanceLedgerSummaryDto> rows = jdbcTemplate.query(sql, (rs, rowNum) -> {
+            Timestamp takenAt = rs.getTimestamp("taken_at");
+            return BalanceLedgerSummaryDto.builder()
+                    .userId(rs.getInt("id"))
+                    .balance(rs.getInt("balance"))
+                    .ledgerNet(rs.getLong("ledger_net"))
+                    .snapshotLedgerId((Long) rs.getObject("ledger_id"))
+                    .snapshotAt(takenAt == null ? null : takenAt.toLocalDateTime())
+                    .build();
+        }, userId);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
 }
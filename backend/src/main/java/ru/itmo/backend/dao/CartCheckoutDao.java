@@ -0,0 +1,71 @@
+package ru.itmo.backend.dao;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class CartCheckoutDao {
+
+    @Value
+    public static class Candidate {
+        int cartItemId;
+        String itemStatus;
+        LocalDateTime reservedUntil;
+        int saleListingId;
+        String listingStatus;
+        int price;
+        int inventoryItemId;
+        int sellerId;
+        int skinId;
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // всё, что нужно для проверки и покупки позиций корзины, одним запросом
+    public List<Candidate> findCandidates(Integer cartId) {
+        String sql = """
+            SELECT
+                ci.id            AS cart_item_id,
+                ci.item_status,
+                ci.reserved_until,
+                sl.id            AS sale_listing_id,
+                sl.status        AS listing_status,
+                sl.price,
+                ii.id            AS inventory_item_id,
+                ii.user_id       AS seller_id,
+                ii.skin_id
+            FROM cart_items ci
+            JOIN sale_listings sl ON sl.id = ci.sale_listing_id
+            JOIN inventory_items ii ON ii.id = sl.inventory_item_id
+            WHERE ci.cart_id = ?
+            ORDER BY ci.id
+            """;
+        return jdbcTemplate.query(sql, (rs, rowNum) -> {
+            Timestamp reservedUntil = rs.getTimestamp("reserved_until");
+            return new Candidate(
+                    rs.getInt("cart_item_id"),
+                    rs.getString("item_status"),
+                    reservedUntil == null ? null : reservedUntil.toLocalDateTime(),
+                    rs.getInt("sale_listing_id"),
+                    rs.getString("listing_status"),
+                    rs.getInt("price"),
+                    rs.getInt("inventory_item_id"),
+                    rs.getInt("seller_id"),
+                    rs.getInt("skin_id"));
+        }, cartId);
+    }
+
+    public int deleteItems(Collection<Integer> cartItemIds) {
+        if (cartItemIds.isEmpty()) return 0;
+        return jdbcTemplate.update("DELETE FROM cart_items WHERE id = ANY(?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("integer", cartItemIds.toArray())));
+    }
+}
@@ -1,11 +1,20 @@
 package ru.itmo.backend.dao;
 
+import lombok.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public class CleanupDao {
 
+    // ключ pg_try_advisory_xact_lock для cleanup_expired_rentals
+    private static final long RENTAL_CLEANUP_LOCK = 0x72656e74L;
+
     private final JdbcTemplate jdbcTemplate;
 
     public CleanupDao(JdbcTemplate jdbcTemplate) {
@@ -19,4 +28,70 @@ public class CleanupDao {
         );
         return cleared == null ? 0 : cleared;
     }
-}
\ No newline at end of file
+
+    // единственный способ снять истекшие резервы порцией: и страховочный проход, и трекер сроков.
+    // позиция корзины удаляется, листинг явно возвращается в ACTIVE; строки, занятые другим узлом, пропускаются.
+    // cartItemIds == null — любые истекшие резервы
+    public List<Integer> releaseExpiredReservations(Collection<Integer> cartItemIds, int limit) {
+        String sql = """
+            WITH expired AS (
+                SELECT id
+                FROM cart_items
+                WHERE item_status = 'RESERVED'
+                  AND reserved_until < now()
+                  %s
+                ORDER BY reserved_until
+                LIMIT ?
+                FOR UPDATE SKIP LOCKED
+            ), released AS (
+                DELETE FROM cart_items ci
+                USING expired e
+                WHERE ci.id = e.id
+                RETURNING ci.sale_listing_id
+            ), listings AS (
+                UPDATE sale_listings sl
+                SET status = 'ACTIVE'
+                FROM released r
+                WHERE sl.id = r.sale_listing_id
+                  AND sl.status = 'RESERVED'
+            )
+            SELECT sale_listing_id FROM released
+            """.formatted(cartItemIds == null ? "" : "AND id = ANY(?)");
+        return jdbcTemplate.query(sql, ps -> {
+            int i = 1;
+            if (cartItemIds != null) {
+                ps.setArray(i++, ps.getConnection().createArrayOf("integer", cartItemIds.toArray()));
+            }
+            ps.setInt(i, limit);
+        }, (rs, rowNum) -> rs.getInt(1));
+    }
+
+    // сколько активных контрактов уже истекло и самый старый срок — по частичному индексу на end_at
+    public RentalDue findRentalDue() {
+        String sql = """
+            SELECT count(*) AS due, min(end_at) AS oldest
+            FROM rental_contracts
+            WHERE status = 'ACTIVE'
+              AND end_at <= now()
+            """;
+        return jdbcTemplate.queryForObject(sql, (rs, rowNum) -> {
+            Timestamp oldest = rs.getTimestamp("oldest");
+            return new RentalDue(rs.getInt("due"), oldest == null ? null : oldest.toLocalDateTime());
+        });
+    }
+
+    // null — функцию прямо сейчас выполняет другой узел
+    public Integer cleanupExpiredRentalsIfFree() {
+        Boolean locked = jdbcTemplate.queryForObject(
+                "SELECT pg_try_advisory_xact_lock(?)", Boolean.class, RENTAL_CLEANUP_LOCK);
+        if (!Boolean.TRUE.equals(locked)) return null;
+        Integer n = jdbcTemplate.queryForObject("SELECT cleanup_expired_rentals()", Integer.class);
+        return n == null ? 0 : n;
+    }
+
+    @Value
+    public static class RentalDue {
+        int count;
+        LocalDateTime oldestEndAt;
+    }
+}
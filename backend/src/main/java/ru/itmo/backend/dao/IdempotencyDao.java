@@ -0,0 +1,58 @@
+package ru.itmo.backend.dao;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+@RequiredArgsConstructor
+public class IdempotencyDao {
+
+    @Value
+    public static class Stored {
+        String requestHash;
+        String response;
+        LocalDateTime expiresAt;
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // true — ключ наш: новый или истёкший. параллельный запрос с тем же ключом ждёт здесь коммита/отката первого
+    public boolean claim(String scope, String key, String requestHash, LocalDateTime expiresAt) {
+        String sql = """
+            INSERT INTO idempotency_keys (scope, idem_key, request_hash, response, created_at, expires_at)
+            VALUES (?, ?, ?, NULL, now(), ?)
+            ON CONFLICT (scope, idem_key) DO UPDATE
+                SET request_hash = EXCLUDED.request_hash,
+                    response = NULL,
+                    created_at = now(),
+                    expires_at = EXCLUDED.expires_at
+                WHERE idempotency_keys.expires_at <= now()
+            """;
+        return jdbcTemplate.update(sql, scope, key, requestHash, Timestamp.valueOf(expiresAt)) == 1;
+    }
+
+    public Optional<Stored> find(String scope, String key) {
+        List<Stored> rows = jdbcTemplate.query(
+                "SELECT request_hash, response, expires_at FROM idempotency_keys WHERE scope = ? AND idem_key = ?",
+                (rs, rowNum) -> new Stored(rs.getString("request_hash"), rs.getString("response"),
+                        rs.getTimestamp("expires_at").toLocalDateTime()),
+                scope, key);
+        return rows.stream().findFirst();
+    }
+
+    public void saveResponse(String scope, String key, String response) {
+        jdbcTemplate.update("UPDATE idempotency_keys SET response = ? WHERE scope = ? AND idem_key = ?",
+                response, scope, key);
+    }
+
+    public int purgeExpired() {
+        return jdbcTemplate.update("DELETE FROM idempotency_keys WHERE expires_at < now()");
+    }
+}
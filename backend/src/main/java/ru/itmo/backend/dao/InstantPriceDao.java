@@ -0,0 +1,76 @@
+package ru.itmo.backend.dao;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.itmo.backend.dto.instant.InstantBuyPriceDto;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class InstantPriceDao {
+
+    private static final String LATEST_SELECT = """
+        SELECT DISTINCT ON (skin_id) id, price, updated_at, skin_id, user_id
+        FROM instant_buy_prices
+        """;
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public List<Integer> findExistingSkinIds(Collection<Integer> skinIds) {
+        if (skinIds.isEmpty()) return List.of();
+        return jdbcTemplate.query("SELECT id FROM skins WHERE id = ANY(?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("integer", skinIds.toArray())),
+                (rs, rowNum) -> rs.getInt("id"));
+    }
+
+    // rows: {skinId, price}; одна цена на (skin_id, user_id), см. ux_instant_buy_prices_skin_user.
+    // skin_id в пачке должны быть уникальны: дубли отклоняет AdminService
+    public void upsertBatch(Integer userId, List<int[]> rows, LocalDateTime updatedAt) {
+        Timestamp ts = Timestamp.valueOf(updatedAt);
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO instant_buy_prices (skin_id, user_id, price, updated_at)
+                VALUES (?, ?, ?, ?)
+                ON CONFLICT (skin_id, user_id)
+                DO UPDATE SET price = EXCLUDED.price, updated_at = EXCLUDED.updated_at
+                """, rows, BATCH_SIZE, (ps, row) -> {
+            ps.setInt(1, row[0]);
+            ps.setInt(2, userId);
+            ps.setInt(3, row[1]);
+            ps.setTimestamp(4, ts);
+        });
+    }
+
+    // последняя цена по каждому скину, как findTopBySkin_IdOrderByUpdatedAtDesc
+    public List<InstantBuyPriceDto> findLatestAll() {
+        return jdbcTemplate.query(LATEST_SELECT + "ORDER BY skin_id, updated_at DESC NULLS LAST, id DESC",
+                (rs, rowNum) -> map(rs));
+    }
+
+    public List<InstantBuyPriceDto> findLatest(Collection<Integer> skinIds) {
+        if (skinIds.isEmpty()) return List.of();
+        return jdbcTemplate.query(
+                LATEST_SELECT + "WHERE skin_id = ANY(?)\nORDER BY skin_id, updated_at DESC NULLS LAST, id DESC",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("integer", skinIds.toArray())),
+                (rs, rowNum) -> map(rs));
+    }
+
+    private static InstantBuyPriceDto map(ResultSet rs) throws SQLException {
+        Timestamp updatedAt = rs.getTimestamp("updated_at");
+        return InstantBuyPriceDto.builder()
+                .id(rs.getInt("id"))
+                .price((Integer) rs.getObject("price"))
+                .updatedAt(updatedAt == null ? null : updatedAt.toLocalDateTime())
+                .skinId(rs.getInt("skin_id"))
+                .userId(rs.getInt("user_id"))
+                .build();
+    }
+}
@@ -0,0 +1,43 @@
+package ru.itmo.backend.dao;
+
+import ru.itmo.backend.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// непрозрачный курсор для keyset-пагинации: части ключа через '|' в base64url
+public final class KeysetCursor {
+
+    private static final String SEPARATOR = "|";
+    // null в ключе кодируется явно, чтобы не путать его со строкой "null" или пустым значением
+    private static final String NULL = "~";
+
+    private KeysetCursor() {}
+
+    public static String encode(Object... parts) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) sb.append(SEPARATOR);
+            sb.append(parts[i] == null ? NULL : parts[i]);
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static boolean isNull(String part) {
+        return NULL.equals(part);
+    }
+
+    public static String[] decode(String cursor, int expectedParts) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", -1);
+            if (parts.length != expectedParts) {
+                throw new BadRequestException("Invalid cursor");
+            }
+            return parts;
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+}
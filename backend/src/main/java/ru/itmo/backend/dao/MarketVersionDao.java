@@ -0,0 +1,25 @@
+package ru.itmo.backend.dao;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+// общая для всех узлов версия витрины — последовательность в БД
+@Repository
+@RequiredArgsConstructor
+public class MarketVersionDao {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public long bump() {
+        Long v = jdbcTemplate.queryForObject("SELECT nextval('market_version_seq')", Long.class);
+        return v == null ? 0 : v;
+    }
+
+    public long current() {
+        // до первого nextval last_value уже равен стартовому значению, поэтому смотрим на is_called
+        Long v = jdbcTemplate.queryForObject(
+                "SELECT CASE WHEN is_called THEN last_value ELSE 0 END FROM market_version_seq", Long.class);
+        return v == null ? 0 : v;
+    }
+}
@@ -0,0 +1,185 @@
+package ru.itmo.backend.dao;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import ru.itmo.backend.dto.payment.PaymentOperationDto;
+import ru.itmo.backend.dto.payment.PaymentOperationPageDto;
+import ru.itmo.backend.exception.BadRequestException;
+import ru.itmo.backend.model.enums.PaymentMethod;
+import ru.itmo.backend.model.enums.PaymentOperationType;
+import ru.itmo.backend.model.enums.PaymentStatus;
+import ru.itmo.backend.payment.PaymentRequest;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+@Repository
+@RequiredArgsConstructor
+public class PaymentDao {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private static final String USER_OPERATIONS = """
+            SELECT id, type, method, status, amount, created_at, user_id
+            FROM payment_operations
+            WHERE user_id = ?
+            """;
+
+    // история пользователя страницами по (created_at, id) DESC — без OFFSET, идёт по индексу.
+    // строки без created_at идут первыми (NULLS FIRST, как в индексе) и в курсоре кодируются явно
+    public PaymentOperationPageDto findUserPage(int userId, String cursor, int limit) {
+        StringBuilder sql = new StringBuilder(USER_OPERATIONS);
+        List<Object> args = new ArrayList<>();
+        args.add(userId);
+        if (cursor != null) {
+            String[] parts = KeysetCursor.decode(cursor, 2);
+            try {
+                if (KeysetCursor.isNull(parts[0])) {
+                    sql.append("  AND ((created_at IS NULL AND id < ?) OR created_at IS NOT NULL)\n");
+                } else {
+                    sql.append("  AND (created_at, id) < (?, ?)\n");
+                    args.add(Timestamp.valueOf(LocalDateTime.parse(parts[0])));
+                }
+                args.add(Integer.parseInt(parts[1]));
+            } catch (RuntimeException e) {
+                throw new BadRequestException("Invalid cursor");
+            }
+        }
+        // на одну строку больше, чтобы понять, есть ли следующая страница
+        sql.append("ORDER BY created_at DESC NULLS FIRST, id DESC\nLIMIT ?");
+        args.add(limit + 1);
+
+        List<PaymentOperationDto> rows = jdbcTemplate.query(sql.toString(),
+                (rs, rowNum) -> mapOperation(rs), args.toArray());
+
+        String nextCursor = null;
+        if (rows.size() > limit) {
+            rows = rows.subList(0, limit);
+            PaymentOperationDto last = rows.get(limit - 1);
+            nextCursor = KeysetCursor.encode(last.getCreatedAt(), last.getId());
+        }
+        return PaymentOperationPageDto.builder()
+                .items(rows)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    // вся история через серверный курсор: драйвер держит в памяти не больше fetchSize строк.
+    // PostgreSQL включает курсор только без autocommit, поэтому вызывать внутри транзакции
+    public void streamUserOperations(int userId, int fetchSize, Consumer<PaymentOperationDto> consumer) {
+        jdbcTemplate.query(con -> {
+                    PreparedStatement ps = con.prepareStatement(USER_OPERATIONS + "ORDER BY created_at DESC, id DESC");
+                    ps.setFetchSize(fetchSize);
+                    ps.setInt(1, userId);
+                    return ps;
+                },
+                (RowCallbackHandler) rs -> consumer.accept(mapOperation(rs)));
+    }
+
+    // переход в SUCCESS выигрывает только один запрос, даже если два пришли одновременно
+    public boolean markSuccess(int operationId) {
+        return jdbcTemplate.update(
+                "UPDATE payment_operations SET status = 'SUCCESS' WHERE id = ? AND status <> 'SUCCESS'",
+                operationId) == 1;
+    }
+
+    // захват PENDING-операций арендой: пока lease_until не истёк, провайдера по операции вызывает только
+    // захвативший узел. строки, которые прямо сейчас захватывает другой узел, пропускаются
+    public List<PaymentRequest> claimPending(int limit, long leaseMs) {
+        String sql = """
+            UPDATE payment_operations
+            SET lease_until = now() + ? * interval '1 millisecond'
+            WHERE id IN (
+                SELECT id
+                FROM payment_operations
+                WHERE status = 'PENDING'
+                  AND (lease_until IS NULL OR lease_until < now())
+                ORDER BY id
+                LIMIT ?
+                FOR UPDATE SKIP LOCKED
+            )
+            RETURNING id, user_id, type, method, amount
+            """;
+        return jdbcTemplate.query(sql, (rs, rowNum) -> mapRequest(rs), leaseMs, limit);
+    }
+
+    // то же для известных id — только что созданные операции
+    public List<PaymentRequest> claim(Collection<Integer> operationIds, long leaseMs) {
+        if (operationIds.isEmpty()) return List.of();
+        String sql = """
+            UPDATE payment_operations
+            SET lease_until = now() + ? * interval '1 millisecond'
+            WHERE id = ANY(?)
+              AND status = 'PENDING'
+              AND (lease_until IS NULL OR lease_until < now())
+            RETURNING id, user_id, type, method, amount
+            """;
+        return jdbcTemplate.query(sql, ps -> {
+            ps.setLong(1, leaseMs);
+            ps.setArray(2, ps.getConnection().createArrayOf("integer", operationIds.toArray()));
+        }, (rs, rowNum) -> mapRequest(rs));
+    }
+
+    // захваченные, но не попавшие в очередь, сразу отдаём другим узлам
+    public void releaseLease(Collection<Integer> operationIds) {
+        if (operationIds.isEmpty()) return;
+        jdbcTemplate.update("UPDATE payment_operations SET lease_until = NULL WHERE id = ANY(?) AND status = 'PENDING'",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("integer", operationIds.toArray())));
+    }
+
+    // PENDING -> SUCCESS для пачки; возвращает только реально переведённые, с данными из БД
+    public List<PaymentRequest> claimSuccess(Collection<Integer> operationIds) {
+        if (operationIds.isEmpty()) return List.of();
+        String sql = """
+            UPDATE payment_operations
+            SET status = 'SUCCESS'
+            WHERE id = ANY(?)
+              AND status = 'PENDING'
+            RETURNING id, user_id, type, method, amount
+            """;
+        return jdbcTemplate.query(sql,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("integer", operationIds.toArray())),
+                (rs, rowNum) -> mapRequest(rs));
+    }
+
+    public int markFailed(Collection<Integer> operationIds, PaymentStatus expected) {
+        if (operationIds.isEmpty()) return 0;
+        return jdbcTemplate.update(
+                "UPDATE payment_operations SET status = 'FAILED' WHERE id = ANY(?) AND status = ?",
+                ps -> {
+                    ps.setArray(1, ps.getConnection().createArrayOf("integer", operationIds.toArray()));
+                    ps.setString(2, expected.name());
+                });
+    }
+
+    private static PaymentOperationDto mapOperation(ResultSet rs) throws SQLException {
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        return PaymentOperationDto.builder()
+                .id(rs.getInt("id"))
+                .type(rs.getString("type"))
+                .method(rs.getString("method"))
+                .status(rs.getString("status"))
+                .amount(rs.getInt("amount"))
+                .createdAt(createdAt == null ? null : createdAt.toLocalDateTime())
+                .userId(rs.getInt("user_id"))
+                .build();
+    }
+
+    private static PaymentRequest mapRequest(ResultSet rs) throws SQLException {
+        return new PaymentRequest(
+                rs.getInt("id"),
+                rs.getInt("user_id"),
+                PaymentOperationType.valueOf(rs.getString("type")),
+                PaymentMethod.valueOf(rs.getString("method")),
+                rs.getInt("amount"));
+    }
+}
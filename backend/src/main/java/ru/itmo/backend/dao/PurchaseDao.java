@@ -6,6 +6,8 @@ import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Slf4j
 @Repository
 @RequiredArgsConstructor
@@ -26,4 +28,24 @@ public class PurchaseDao {
             throw e;
         }
     }
+
+    // rows: {sellerId, inventoryItemId, price}; все вызовы уходят одним JDBC-батчем
+    public void executePurchases(int buyerId, List<int[]> rows) {
+        log.info("Calling execute_purchase batch(buyerId={}, items={})", buyerId, rows.size());
+
+        try {
+            jdbcTemplate.batchUpdate("CALL execute_purchase(?, ?, ?, ?)", rows, rows.size(), (ps, row) -> {
+                ps.setInt(1, buyerId);
+                ps.setInt(2, row[0]);
+                ps.setInt(3, row[1]);
+                ps.setInt(4, row[2]);
+            });
+
+            log.info("execute_purchase batch finished OK");
+        } catch (DataAccessException e) {
+            String msg = e.getRootCause() != null ? e.getRootCause().getMessage() : e.getMessage();
+            log.warn("execute_purchase batch failed: {}", msg);
+            throw e;
+        }
+    }
 }
@@ -0,0 +1,157 @@
+package ru.itmo.backend.dao;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.itmo.backend.dto.rental.RentalBookingDto;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+@RequiredArgsConstructor
+public class RentalBookingDao {
+
+    private static final String BOOKING_COLUMNS =
+            "id, rental_listing_id, renter_id, start_at, end_at, days, status, rental_contract_id, error";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // всё, что занимает календарь: идущие контракты и ещё не начавшиеся брони
+    public List<Slot> findCalendarSlots() {
+        String sql = """
+            SELECT rental_listing_id, NULL::int AS booking_id, COALESCE(start_at, now()) AS start_at, end_at
+            FROM rental_contracts
+            WHERE status = 'ACTIVE'
+              AND end_at > now()
+            UNION ALL
+            SELECT rental_listing_id, id, start_at, end_at
+            FROM rental_bookings
+            WHERE status = 'BOOKED'
+              AND end_at > now()
+            """;
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new Slot(
+                rs.getInt("rental_listing_id"),
+                (Integer) rs.getObject("booking_id"),
+                rs.getTimestamp("start_at").toLocalDateTime(),
+                rs.getTimestamp("end_at").toLocalDateTime()));
+    }
+
+    // блокирует листинг до конца транзакции: брони одного листинга оформляются по очереди даже на разных узлах
+    public Optional<Listing> lockListing(int rentalListingId) {
+        String sql = """
+            SELECT rl.max_days, ii.user_id AS owner_id
+            FROM rental_listings rl
+            JOIN inventory_items ii ON ii.id = rl.inventory_item_id
+            WHERE rl.id = ?
+            FOR UPDATE OF rl
+            """;
+        return jdbcTemplate.query(sql,
+                (rs, rowNum) -> new Listing(rs.getInt("max_days"), rs.getInt("owner_id")),
+                rentalListingId).stream().findFirst();
+    }
+
+    // окончательная проверка пересечения [startAt, endAt) под блокировкой листинга
+    public boolean overlaps(int rentalListingId, LocalDateTime startAt, LocalDateTime endAt) {
+        String sql = """
+            SELECT EXISTS (
+                SELECT 1 FROM rental_bookings
+                WHERE rental_listing_id = ? AND status = 'BOOKED'
+                  AND start_at < ? AND end_at > ?
+            ) OR EXISTS (
+                SELECT 1 FROM rental_contracts
+                WHERE rental_listing_id = ? AND status = 'ACTIVE'
+                  AND COALESCE(start_at, now()) < ? AND end_at > ?
+            )
+            """;
+        Timestamp start = Timestamp.valueOf(startAt);
+        Timestamp end = Timestamp.valueOf(endAt);
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class,
+                rentalListingId, end, start, rentalListingId, end, start));
+    }
+
+    // на листинге висит контракт, который по сроку закончился не позже начала брони, но ещё не закрыт
+    public boolean hasOverdueContract(int rentalListingId, LocalDateTime startAt) {
+        String sql = """
+            SELECT EXISTS (
+                SELECT 1 FROM rental_contracts
+                WHERE rental_listing_id = ? AND status = 'ACTIVE' AND end_at <= ?
+            )
+            """;
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class,
+                rentalListingId, Timestamp.valueOf(startAt)));
+    }
+
+    public RentalBookingDto insert(int rentalListingId, int renterId, LocalDateTime startAt, LocalDateTime endAt, int days) {
+        String sql = "INSERT INTO rental_bookings (rental_listing_id, renter_id, start_at, end_at, days) "
+                + "VALUES (?, ?, ?, ?, ?) RETURNING " + BOOKING_COLUMNS;
+        return jdbcTemplate.queryForObject(sql, (rs, rowNum) -> mapBooking(rs),
+                rentalListingId, renterId, Timestamp.valueOf(startAt), Timestamp.valueOf(endAt), days);
+    }
+
+    public Optional<RentalBookingDto> cancel(int bookingId, int renterId) {
+        String sql = "UPDATE rental_bookings SET status = 'CANCELED' "
+                + "WHERE id = ? AND renter_id = ? AND status = 'BOOKED' RETURNING " + BOOKING_COLUMNS;
+        return jdbcTemplate.query(sql, (rs, rowNum) -> mapBooking(rs), bookingId, renterId).stream().findFirst();
+    }
+
+    public Optional<RentalBookingDto> findById(int bookingId) {
+        return jdbcTemplate.query("SELECT " + BOOKING_COLUMNS + " FROM rental_bookings WHERE id = ?",
+                (rs, rowNum) -> mapBooking(rs), bookingId).stream().findFirst();
+    }
+
+    public List<RentalBookingDto> findByRenter(int renterId) {
+        return jdbcTemplate.query("SELECT " + BOOKING_COLUMNS + " FROM rental_bookings WHERE renter_id = ? ORDER BY start_at DESC, id DESC",
+                (rs, rowNum) -> mapBooking(rs), renterId);
+    }
+
+    // наступившие брони; занятые другим узлом пропускаются
+    public List<RentalBookingDto> lockDue(int limit) {
+        String sql = "SELECT " + BOOKING_COLUMNS + " FROM rental_bookings "
+                + "WHERE status = 'BOOKED' AND start_at <= now() "
+                + "ORDER BY start_at LIMIT ? FOR UPDATE SKIP LOCKED";
+        return jdbcTemplate.query(sql, (rs, rowNum) -> mapBooking(rs), limit);
+    }
+
+    public void markStarted(int bookingId, int rentalContractId) {
+        jdbcTemplate.update("UPDATE rental_bookings SET status = 'STARTED', rental_contract_id = ? WHERE id = ?",
+                rentalContractId, bookingId);
+    }
+
+    public void markFailed(int bookingId, String error) {
+        jdbcTemplate.update("UPDATE rental_bookings SET status = 'FAILED', error = ? WHERE id = ?", error, bookingId);
+    }
+
+    private static RentalBookingDto mapBooking(ResultSet rs) throws SQLException {
+        return RentalBookingDto.builder()
+                .id(rs.getInt("id"))
+                .listingId(rs.getInt("rental_listing_id"))
+                .renterId(rs.getInt("renter_id"))
+                .startAt(rs.getTimestamp("start_at").toLocalDateTime())
+                .endAt(rs.getTimestamp("end_at").toLocalDateTime())
+                .days(rs.getInt("days"))
+                .status(rs.getString("status"))
+                .rentalContractId((Integer) rs.getObject("rental_contract_id"))
+                .error(rs.getString("error"))
+                .build();
+    }
+
+    @Value
+    public static class Slot {
+        int rentalListingId;
+        Integer bookingId;
+        LocalDateTime startAt;
+        LocalDateTime endAt;
+    }
+
+    @Value
+    public static class Listing {
+        int maxDays;
+        int ownerId;
+    }
+}
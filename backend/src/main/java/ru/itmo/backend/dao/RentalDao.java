@@ -1,13 +1,25 @@
 package ru.itmo.backend.dao;
 
+import lombok.Value;
 import org.springframework.jdbc.core.CallableStatementCreator;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
 import ru.itmo.backend.dto.rental.RentResult;
+import ru.itmo.backend.dto.rental.RentalListingDto;
+import ru.itmo.backend.dto.rental.RentalListingFilter;
 
 import java.sql.CallableStatement;
 import java.sql.Connection;
+import java.sql.Timestamp;
 import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 @Repository
 public class RentalDao {
@@ -45,46 +57,150 @@ public class RentalDao {
         });
     }
 
-    public int cleanupExpiredRentals() {
-        Integer n = jdbcTemplate.queryForObject("SELECT cleanup_expired_rentals()", Integer.class);
-        return n == null ? 0 : n;
+    public Map<Integer, LocalDateTime> findActiveRentalEnds() {
+        String sql = """
+            SELECT rental_listing_id, MAX(end_at) AS end_at
+            FROM rental_contracts
+            WHERE status = 'ACTIVE'
+              AND end_at > NOW()
+            GROUP BY rental_listing_id
+            """;
+        Map<Integer, LocalDateTime> result = new HashMap<>();
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs ->
+                result.put(rs.getInt("rental_listing_id"), rs.getTimestamp("end_at").toLocalDateTime()));
+        return result;
+    }
+
+    public Optional<Period> findContractPeriod(int rentalContractId) {
+        List<Period> rows = jdbcTemplate.query(
+                "SELECT COALESCE(start_at, now()) AS start_at, end_at FROM rental_contracts WHERE id = ? AND end_at IS NOT NULL",
+                (rs, rowNum) -> new Period(
+                        rs.getTimestamp("start_at").toLocalDateTime(),
+                        rs.getTimestamp("end_at").toLocalDateTime()),
+                rentalContractId);
+        return rows.stream().findFirst();
+    }
+
+    // rent_skin считает срок от момента вызова; контракт из брони переносим ровно на окно брони
+    public void setContractPeriod(int rentalContractId, LocalDateTime startAt, LocalDateTime endAt) {
+        jdbcTemplate.update("UPDATE rental_contracts SET start_at = ?, end_at = ? WHERE id = ?",
+                Timestamp.valueOf(startAt), Timestamp.valueOf(endAt), rentalContractId);
+    }
+
+    // условия аренды пачки листингов одним запросом
+    public Map<Integer, Terms> findTerms(Collection<Integer> rentalListingIds) {
+        if (rentalListingIds.isEmpty()) return Map.of();
+        String sql = """
+            SELECT rl.id, rl.price_per_day, rl.max_days, ii.user_id AS owner_id
+            FROM rental_listings rl
+            JOIN inventory_items ii ON ii.id = rl.inventory_item_id
+            WHERE rl.id = ANY(?)
+            """;
+        Map<Integer, Terms> result = new HashMap<>();
+        jdbcTemplate.query(sql,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("integer", rentalListingIds.toArray())),
+                (RowCallbackHandler) rs -> result.put(rs.getInt("id"),
+                        new Terms(rs.getInt("price_per_day"), rs.getInt("max_days"), rs.getInt("owner_id"))));
+        return result;
     }
 
-    public java.util.List<ru.itmo.backend.dto.rental.RentalListingDto> getAvailableRentalListings(Integer ownerId) {
+    public Map<Integer, Period> findContractPeriods(Collection<Integer> rentalContractIds) {
+        if (rentalContractIds.isEmpty()) return Map.of();
         String sql = """
-        SELECT
-            rl.id        AS listing_id,
-            rl.price_per_day,
-            rl.max_days,
-            s.id         AS skin_id,
-            s.name       AS skin_name,
-            ii.user_id   AS owner_id
-        FROM rental_listings rl
-        JOIN inventory_items ii ON ii.id = rl.inventory_item_id
-        JOIN skins s ON s.id = ii.skin_id
-        WHERE (? IS NULL OR ii.user_id = ?)
-          AND NOT EXISTS (
-              SELECT 1
-              FROM rental_contracts rc
-              WHERE rc.rental_listing_id = rl.id
-                AND rc.status = 'ACTIVE'
-                AND rc.end_at > NOW()
-          )
-        ORDER BY rl.id DESC
-        """;
-
-        return jdbcTemplate.query(sql, ps -> {
-            ps.setObject(1, ownerId);
-            ps.setObject(2, ownerId);
-        }, (rs, rowNum) -> ru.itmo.backend.dto.rental.RentalListingDto.builder()
+            SELECT id, COALESCE(start_at, now()) AS start_at, end_at
+            FROM rental_contracts
+            WHERE id = ANY(?)
+              AND end_at IS NOT NULL
+            """;
+        Map<Integer, Period> result = new HashMap<>();
+        jdbcTemplate.query(sql,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("integer", rentalContractIds.toArray())),
+                (RowCallbackHandler) rs -> result.put(rs.getInt("id"), new Period(
+                        rs.getTimestamp("start_at").toLocalDateTime(),
+                        rs.getTimestamp("end_at").toLocalDateTime())));
+        return result;
+    }
+
+    // единственный запрос каталога аренды: в SQL попадают только заданные фильтры, порядок rl.id DESC.
+    // excludeRented — отсеять занятые подзапросом, когда индекса занятости ещё нет; limit == null — без ограничения
+    public List<RentalListingDto> findListings(RentalListingFilter filter, boolean excludeRented,
+                                               Integer beforeId, Integer limit) {
+        StringBuilder sql = new StringBuilder("""
+            SELECT
+                rl.id        AS listing_id,
+                rl.price_per_day,
+                rl.max_days,
+                s.id         AS skin_id,
+                s.name       AS skin_name,
+                ii.user_id   AS owner_id
+            FROM rental_listings rl
+            JOIN inventory_items ii ON ii.id = rl.inventory_item_id
+            JOIN skins s ON s.id = ii.skin_id
+            WHERE TRUE
+            """);
+        List<Object> args = new ArrayList<>();
+
+        if (excludeRented) {
+            sql.append("""
+                  AND NOT EXISTS (
+                      SELECT 1
+                      FROM rental_contracts rc
+                      WHERE rc.rental_listing_id = rl.id
+                        AND rc.status = 'ACTIVE'
+                        AND rc.end_at > NOW()
+                  )
+                """);
+        }
+        if (filter.getOwnerId() != null) {
+            sql.append("  AND ii.user_id = ?\n");
+            args.add(filter.getOwnerId());
+        }
+        if (filter.getSkinId() != null) {
+            sql.append("  AND ii.skin_id = ?\n");
+            args.add(filter.getSkinId());
+        }
+        if (filter.getMinPricePerDay() != null) {
+            sql.append("  AND rl.price_per_day >= ?\n");
+            args.add(filter.getMinPricePerDay());
+        }
+        if (filter.getMaxPricePerDay() != null) {
+            sql.append("  AND rl.price_per_day <= ?\n");
+            args.add(filter.getMaxPricePerDay());
+        }
+        if (filter.getMinMaxDays() != null) {
+            sql.append("  AND rl.max_days >= ?\n");
+            args.add(filter.getMinMaxDays());
+        }
+        if (beforeId != null) {
+            sql.append("  AND rl.id < ?\n");
+            args.add(beforeId);
+        }
+        sql.append("ORDER BY rl.id DESC\n");
+        if (limit != null) {
+            sql.append("LIMIT ?");
+            args.add(limit);
+        }
+
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> RentalListingDto.builder()
                 .listingId(rs.getInt("listing_id"))
                 .pricePerDay(rs.getInt("price_per_day"))
                 .maxDays(rs.getInt("max_days"))
                 .skinId(rs.getInt("skin_id"))
                 .skinName(rs.getString("skin_name"))
                 .ownerId(rs.getInt("owner_id"))
-                .build());
+                .build(), args.toArray());
     }
 
+    @Value
+    public static class Terms {
+        int pricePerDay;
+        int maxDays;
+        int ownerId;
+    }
 
-}
\ No newline at end of file
+    @Value
+    public static class Period {
+        LocalDateTime startAt;
+        LocalDateTime endAt;
+    }
+}
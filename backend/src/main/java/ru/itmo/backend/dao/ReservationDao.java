@@ -0,0 +1,49 @@
+package ru.itmo.backend.dao;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class ReservationDao {
+
+    @Value
+    public static class Deadline {
+        int cartItemId;
+        int saleListingId;
+        LocalDateTime reservedUntil;
+    }
+
+    private static final String DEADLINE_SELECT = """
+        SELECT id, sale_listing_id, reserved_until
+        FROM cart_items
+        WHERE item_status = 'RESERVED'
+          AND reserved_until IS NOT NULL
+        """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public List<Deadline> findActiveDeadlines() {
+        return jdbcTemplate.query(DEADLINE_SELECT, (rs, rowNum) -> mapDeadline(rs));
+    }
+
+    public List<Deadline> findDeadlines(Collection<Integer> cartItemIds) {
+        if (cartItemIds.isEmpty()) return List.of();
+        return jdbcTemplate.query(DEADLINE_SELECT + "  AND id = ANY(?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("integer", cartItemIds.toArray())),
+                (rs, rowNum) -> mapDeadline(rs));
+    }
+
+    private static Deadline mapDeadline(ResultSet rs) throws SQLException {
+        return new Deadline(rs.getInt("id"), rs.getInt("sale_listing_id"),
+                rs.getTimestamp("reserved_until").toLocalDateTime());
+    }
+}
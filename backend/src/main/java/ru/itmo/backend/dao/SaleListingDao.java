@@ -0,0 +1,355 @@
+package ru.itmo.backend.dao;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.itmo.backend.dto.market.SaleListingFilter;
+import ru.itmo.backend.dto.market.SaleListingPageDto;
+import ru.itmo.backend.dto.market.SaleListingPreviewDto;
+import ru.itmo.backend.exception.BadRequestException;
+import ru.itmo.backend.index.OrderBook;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Repository
+@RequiredArgsConstructor
+public class SaleListingDao {
+
+    public enum Sort {
+        ID("sl.id"),
+        PRICE("sl.price"),
+        CREATED_AT("sl.created_at");
+
+        private final String column;
+
+        Sort(String column) {
+            this.column = column;
+        }
+    }
+
+    @lombok.Value
+    public static class Updated {
+        int saleListingId;
+        int inventoryItemId;
+        int skinId;
+        int price;
+    }
+
+    private static final String PREVIEW_SELECT = """
+        SELECT
+            sl.id,
+            sl.price,
+            sl.status,
+            sl.created_at,
+            ii.id        AS inventory_item_id,
+            ii.user_id   AS seller_id,
+            s.id         AS skin_id,
+            s.name       AS skin_name,
+            s.rarity,
+            s.condition,
+            s.collection
+        FROM sale_listings sl
+        JOIN inventory_items ii ON ii.id = sl.inventory_item_id
+        JOIN skins s ON s.id = ii.skin_id
+        """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public List<SaleListingPreviewDto> findActivePreviews() {
+        return jdbcTemplate.query(PREVIEW_SELECT + "WHERE sl.status = 'ACTIVE'\nORDER BY sl.id",
+                (rs, rowNum) -> mapPreview(rs));
+    }
+
+    public List<SaleListingPreviewDto> findPreviewsByOwner(Integer ownerId) {
+        return jdbcTemplate.query(PREVIEW_SELECT + "WHERE ii.user_id = ?\nORDER BY sl.id DESC",
+                (rs, rowNum) -> mapPreview(rs), ownerId);
+    }
+
+    public List<OrderBook.Order> findActiveOrders() {
+        String sql = """
+            SELECT sl.id, ii.skin_id, sl.price
+            FROM sale_listings sl
+            JOIN inventory_items ii ON ii.id = sl.inventory_item_id
+            WHERE sl.status = 'ACTIVE'
+            """;
+        return jdbcTemplate.query(sql, (rs, rowNum) ->
+                new OrderBook.Order(rs.getInt("id"), rs.getInt("skin_id"), rs.getInt("price")));
+    }
+
+    public List<OrderBook.Order> findActiveOrders(Collection<Integer> saleListingIds) {
+        if (saleListingIds.isEmpty()) return List.of();
+        String sql = """
+            SELECT sl.id, ii.skin_id, sl.price
+            FROM sale_listings sl
+            JOIN inventory_items ii ON ii.id = sl.inventory_item_id
+            WHERE sl.status = 'ACTIVE'
+              AND sl.id = ANY(?)
+            """;
+        return jdbcTemplate.query(sql,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("integer", saleListingIds.toArray())),
+                (rs, rowNum) -> new OrderBook.Order(rs.getInt("id"), rs.getInt("skin_id"), rs.getInt("price")));
+    }
+
+    // активный листинг предмета: execute_purchase принимает inventoryItemId, а событию нужен id листинга
+    public Optional<OrderBook.Order> findActiveOrderByInventoryItem(int inventoryItemId) {
+        String sql = """
+            SELECT sl.id, ii.skin_id, sl.price
+            FROM sale_listings sl
+            JOIN inventory_items ii ON ii.id = sl.inventory_item_id
+            WHERE sl.inventory_item_id = ?
+              AND sl.status = 'ACTIVE'
+            """;
+        return jdbcTemplate.query(sql,
+                (rs, rowNum) -> new OrderBook.Order(rs.getInt("id"), rs.getInt("skin_id"), rs.getInt("price")),
+                inventoryItemId).stream().findFirst();
+    }
+
+    public String findStatus(Integer saleListingId) {
+        List<String> statuses = jdbcTemplate.queryForList(
+                "SELECT status FROM sale_listings WHERE id = ?", String.class, saleListingId);
+        return statuses.isEmpty() ? null : statuses.get(0);
+    }
+
+    // inventoryItemId -> skinId для предметов, которые принадлежат владельцу
+    public Map<Integer, Integer> findOwnedItemSkins(Integer ownerId, Collection<Integer> inventoryItemIds) {
+        Map<Integer, Integer> result = new HashMap<>();
+        if (inventoryItemIds.isEmpty()) return result;
+        jdbcTemplate.query("SELECT id, skin_id FROM inventory_items WHERE id = ANY(?) AND user_id = ?",
+                ps -> {
+                    ps.setArray(1, ps.getConnection().createArrayOf("integer", inventoryItemIds.toArray()));
+                    ps.setInt(2, ownerId);
+                },
+                rs -> {
+                    result.put(rs.getInt("id"), rs.getInt("skin_id"));
+                });
+        return result;
+    }
+
+    // rows: {inventoryItemId, price}; возвращает {saleListingId, inventoryItemId, price} только для вставленных строк
+    public List<int[]> insertActive(List<int[]> rows) {
+        if (rows.isEmpty()) return List.of();
+        Integer[] itemIds = new Integer[rows.size()];
+        Integer[] prices = new Integer[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            itemIds[i] = rows.get(i)[0];
+            prices[i] = rows.get(i)[1];
+        }
+        String sql = """
+            INSERT INTO sale_listings (inventory_item_id, price, status, created_at)
+            SELECT t.inventory_item_id, t.price, 'ACTIVE', now()
+            FROM unnest(?::int[], ?::int[]) AS t(inventory_item_id, price)
+            ON CONFLICT DO NOTHING
+            RETURNING id, inventory_item_id, price
+            """;
+        return jdbcTemplate.query(sql,
+                ps -> {
+                    ps.setArray(1, ps.getConnection().createArrayOf("integer", itemIds));
+                    ps.setArray(2, ps.getConnection().createArrayOf("integer", prices));
+                },
+                (rs, rowNum) -> new int[]{rs.getInt("id"), rs.getInt("inventory_item_id"), rs.getInt("price")});
+    }
+
+    // отменяет только ACTIVE-листинги продавца; остальные id просто не попадают в RETURNING
+    public List<Updated> cancelActive(Integer ownerId, Collection<Integer> saleListingIds) {
+        if (saleListingIds.isEmpty()) return List.of();
+        String sql = """
+            UPDATE sale_listings sl
+            SET status = 'CANCELLED'
+            FROM inventory_items ii
+            WHERE ii.id = sl.inventory_item_id
+              AND ii.user_id = ?
+              AND sl.status = 'ACTIVE'
+              AND sl.id = ANY(?)
+            RETURNING sl.id, sl.inventory_item_id, ii.skin_id, sl.price
+            """;
+        return jdbcTemplate.query(sql,
+                ps -> {
+                    ps.setInt(1, ownerId);
+                    ps.setArray(2, ps.getConnection().createArrayOf("integer", saleListingIds.toArray()));
+                },
+                (rs, rowNum) -> mapUpdated(rs));
+    }
+
+    // rows: {saleListingId, price}; цена меняется на месте, без отмены и пересоздания листинга
+    public List<Updated> repriceActive(Integer ownerId, List<int[]> rows) {
+        if (rows.isEmpty()) return List.of();
+        Integer[] ids = new Integer[rows.size()];
+        Integer[] prices = new Integer[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            ids[i] = rows.get(i)[0];
+            prices[i] = rows.get(i)[1];
+        }
+        String sql = """
+            UPDATE sale_listings sl
+            SET price = t.price
+            FROM unnest(?::int[], ?::int[]) AS t(id, price), inventory_items ii
+            WHERE sl.id = t.id
+              AND ii.id = sl.inventory_item_id
+              AND ii.user_id = ?
+              AND sl.status = 'ACTIVE'
+            RETURNING sl.id, sl.inventory_item_id, ii.skin_id, sl.price
+            """;
+        return jdbcTemplate.query(sql,
+                ps -> {
+                    ps.setArray(1, ps.getConnection().createArrayOf("integer", ids));
+                    ps.setArray(2, ps.getConnection().createArrayOf("integer", prices));
+                    ps.setInt(3, ownerId);
+                },
+                (rs, rowNum) -> mapUpdated(rs));
+    }
+
+    public SaleListingPageDto findActivePage(SaleListingFilter filter, Sort sort, boolean desc,
+                                             String cursor, int limit) {
+        StringBuilder sql = new StringBuilder(PREVIEW_SELECT).append("WHERE sl.status = 'ACTIVE'\n");
+        List<Object> args = new ArrayList<>();
+
+        // только реально заданные фильтры попадают в запрос, без (? IS NULL OR ...)
+        if (filter.getSkinId() != null) {
+            sql.append("  AND ii.skin_id = ?\n");
+            args.add(filter.getSkinId());
+        }
+        if (filter.getRarity() != null) {
+            sql.append("  AND s.rarity = ?\n");
+            args.add(filter.getRarity());
+        }
+        if (filter.getCollection() != null) {
+            sql.append("  AND s.collection = ?\n");
+            args.add(filter.getCollection());
+        }
+        if (filter.getCondition() != null) {
+            sql.append("  AND s.condition = ?\n");
+            args.add(filter.getCondition());
+        }
+        if (filter.getMinPrice() != null) {
+            sql.append("  AND sl.price >= ?\n");
+            args.add(filter.getMinPrice());
+        }
+        if (filter.getMaxPrice() != null) {
+            sql.append("  AND sl.price <= ?\n");
+            args.add(filter.getMaxPrice());
+        }
+
+        String cmp = desc ? "<" : ">";
+        if (cursor != null) {
+            String[] parts = KeysetCursor.decode(cursor, 4);
+            if (!sort.name().equals(parts[0]) || desc != Boolean.parseBoolean(parts[1])) {
+                throw new BadRequestException("Cursor does not match sort order");
+            }
+            Integer lastId = parseId(parts[3]);
+            if (sort == Sort.ID) {
+                sql.append("  AND sl.id ").append(cmp).append(" ?\n");
+                args.add(lastId);
+            } else if (sort == Sort.CREATED_AT) {
+                appendCreatedAfter(sql, args, desc, parts[2], lastId);
+            } else {
+                sql.append("  AND (").append(sort.column).append(", sl.id) ").append(cmp).append(" (?, ?)\n");
+                args.add(parseSortValue(sort, parts[2]));
+                args.add(lastId);
+            }
+        }
+
+        String dir = desc ? "DESC" : "ASC";
+        if (sort == Sort.ID) {
+            sql.append("ORDER BY sl.id ").append(dir).append('\n');
+        } else {
+            // created_at может быть NULL: такие строки идут в конце ASC и в начале DESC, как в индексе
+            sql.append("ORDER BY ").append(sort.column).append(' ').append(dir)
+                    .append(desc ? " NULLS FIRST" : " NULLS LAST")
+                    .append(", sl.id ").append(dir).append('\n');
+        }
+        // берём на одну строку больше, чтобы понять, есть ли следующая страница
+        sql.append("LIMIT ?");
+        args.add(limit + 1);
+
+        List<Object[]> rows = jdbcTemplate.query(sql.toString(),
+                (rs, rowNum) -> new Object[]{mapPreview(rs), sortValue(rs, sort)},
+                args.toArray());
+
+        String nextCursor = null;
+        if (rows.size() > limit) {
+            rows = rows.subList(0, limit);
+            Object[] last = rows.get(limit - 1);
+            SaleListingPreviewDto dto = (SaleListingPreviewDto) last[0];
+            nextCursor = KeysetCursor.encode(sort.name(), desc, last[1], dto.getId());
+        }
+
+        return SaleListingPageDto.builder()
+                .items(rows.stream().map(r -> (SaleListingPreviewDto) r[0]).toList())
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    // сравнение кортежей с NULL даёт NULL, поэтому строки без created_at обрабатываются отдельно
+    private static void appendCreatedAfter(StringBuilder sql, List<Object> args, boolean desc,
+                                           String rawCreatedAt, Integer lastId) {
+        String cmp = desc ? "<" : ">";
+        if (KeysetCursor.isNull(rawCreatedAt)) {
+            sql.append("  AND (sl.created_at IS NULL AND sl.id ").append(cmp).append(" ?");
+            sql.append(desc ? " OR sl.created_at IS NOT NULL)\n" : ")\n");
+            args.add(lastId);
+            return;
+        }
+        sql.append("  AND ((sl.created_at, sl.id) ").append(cmp).append(" (?, ?)");
+        sql.append(desc ? ")\n" : " OR sl.created_at IS NULL)\n");
+        args.add(parseSortValue(Sort.CREATED_AT, rawCreatedAt));
+        args.add(lastId);
+    }
+
+    private static SaleListingPreviewDto mapPreview(ResultSet rs) throws SQLException {
+        return SaleListingPreviewDto.builder()
+                .id(rs.getInt("id"))
+                .price(rs.getInt("price"))
+                .status(rs.getString("status"))
+                .inventoryItemId(rs.getInt("inventory_item_id"))
+                .sellerId(rs.getInt("seller_id"))
+                .skinId(rs.getInt("skin_id"))
+                .skinName(rs.getString("skin_name"))
+                .rarity(rs.getString("rarity"))
+                .condition(rs.getString("condition"))
+                .collection(rs.getString("collection"))
+                .build();
+    }
+
+    private static Updated mapUpdated(ResultSet rs) throws SQLException {
+        return new Updated(rs.getInt("id"), rs.getInt("inventory_item_id"), rs.getInt("skin_id"), rs.getInt("price"));
+    }
+
+    private static Object sortValue(ResultSet rs, Sort sort) throws SQLException {
+        return switch (sort) {
+            case ID -> rs.getInt("id");
+            case PRICE -> rs.getInt("price");
+            case CREATED_AT -> {
+                Timestamp ts = rs.getTimestamp("created_at");
+                yield ts == null ? null : ts.toLocalDateTime();
+            }
+        };
+    }
+
+    private static Object parseSortValue(Sort sort, String raw) {
+        try {
+            return switch (sort) {
+                case ID, PRICE -> Integer.parseInt(raw);
+                case CREATED_AT -> Timestamp.valueOf(LocalDateTime.parse(raw));
+            };
+        } catch (RuntimeException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+
+    private static Integer parseId(String raw) {
+        try {
+            return Integer.parseInt(raw);
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package ru.itmo.backend.dto;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+@Value
+@Builder
+public class CleanupRunStatsDto {
+    String job;
+    LocalDateTime lastRunAt;
+    int lastRowsCleared;
+    int lastChunks;
+    long lastDurationMs;
+    long totalRuns;
+    long totalRowsCleared;
+    String lastError;
+}
@@ -0,0 +1,11 @@
+package ru.itmo.backend.dto.cart;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.Data;
+
+@Data
+public class CheckoutAllRequest {
+    @NotNull @Positive
+    private Integer userId;
+}
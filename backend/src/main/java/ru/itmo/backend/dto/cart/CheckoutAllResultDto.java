@@ -0,0 +1,16 @@
+package ru.itmo.backend.dto.cart;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+@Builder
+public class CheckoutAllResultDto {
+    int total;
+    int purchased;
+    int failed;
+    long totalSpent;
+    List<CheckoutItemResultDto> results;
+}
@@ -0,0 +1,14 @@
+package ru.itmo.backend.dto.cart;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class CheckoutItemResultDto {
+    Integer cartItemId;
+    Integer saleListingId;
+    Integer price;
+    boolean success;
+    String error;
+}
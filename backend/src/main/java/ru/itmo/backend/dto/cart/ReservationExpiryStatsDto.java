@@ -0,0 +1,19 @@
+package ru.itmo.backend.dto.cart;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+@Value
+@Builder
+public class ReservationExpiryStatsDto {
+    int backlog;
+    int tracked;
+    LocalDateTime nextDeadline;
+    long releases;
+    long listingsReleased;
+    long failures;
+    long lastLagMs;
+    long maxLagMs;
+}
@@ -0,0 +1,14 @@
+package ru.itmo.backend.dto.instant;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class InstantPriceBatchItemResultDto {
+    int index;
+    Integer skinId;
+    Integer price;
+    boolean success;
+    String error;
+}
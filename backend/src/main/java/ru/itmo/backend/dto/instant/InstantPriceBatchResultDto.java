@@ -0,0 +1,15 @@
+package ru.itmo.backend.dto.instant;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+@Builder
+public class InstantPriceBatchResultDto {
+    int total;
+    int succeeded;
+    int failed;
+    List<InstantPriceBatchItemResultDto> results;
+}
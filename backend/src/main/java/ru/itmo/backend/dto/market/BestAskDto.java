@@ -0,0 +1,12 @@
+package ru.itmo.backend.dto.market;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class BestAskDto {
+    Integer skinId;
+    Integer price;
+    Integer saleListingId;
+}
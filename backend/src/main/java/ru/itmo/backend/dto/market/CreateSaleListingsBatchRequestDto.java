@@ -0,0 +1,29 @@
+package ru.itmo.backend.dto.market;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class CreateSaleListingsBatchRequestDto {
+
+    @NotNull @Positive
+    private Integer sellerId;
+
+    @NotEmpty
+    private List<@Valid Item> items;
+
+    @Data
+    public static class Item {
+
+        @NotNull @Positive
+        private Integer inventoryItemId;
+
+        @NotNull @Positive
+        private Integer price;
+    }
+}
@@ -0,0 +1,12 @@
+package ru.itmo.backend.dto.market;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class FacetValueDto {
+    String value;
+    Integer count;
+    Integer activeListings;
+}
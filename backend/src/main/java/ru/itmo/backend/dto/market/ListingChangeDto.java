@@ -0,0 +1,13 @@
+package ru.itmo.backend.dto.market;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class ListingChangeDto {
+    Integer id;
+    Integer skinId;
+    Integer price;
+    String status;
+}
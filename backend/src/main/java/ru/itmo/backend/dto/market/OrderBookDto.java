@@ -0,0 +1,15 @@
+package ru.itmo.backend.dto.market;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+@Builder
+public class OrderBookDto {
+    Integer skinId;
+    Integer totalListings;
+    Integer bestAsk;
+    List<PriceLevelDto> levels;
+}
@@ -0,0 +1,15 @@
+package ru.itmo.backend.dto.market;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class SaleListingBatchItemResultDto {
+    int index;
+    Integer inventoryItemId;
+    Integer saleListingId;
+    Integer price;
+    boolean success;
+    String error;
+}
@@ -0,0 +1,15 @@
+package ru.itmo.backend.dto.market;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+@Builder
+public class SaleListingBatchResultDto {
+    int total;
+    int succeeded;
+    int failed;
+    List<SaleListingBatchItemResultDto> results;
+}
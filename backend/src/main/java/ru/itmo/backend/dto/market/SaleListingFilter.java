@@ -0,0 +1,15 @@
+package ru.itmo.backend.dto.market;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class SaleListingFilter {
+    Integer skinId;
+    String rarity;
+    String collection;
+    String condition;
+    Integer minPrice;
+    Integer maxPrice;
+}
@@ -0,0 +1,13 @@
+package ru.itmo.backend.dto.market;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+@Builder
+public class SaleListingPageDto {
+    List<SaleListingPreviewDto> items;
+    String nextCursor;
+}
@@ -0,0 +1,18 @@
+package ru.itmo.backend.dto.market;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class SaleListingsBatchCancelRequestDto {
+
+    @NotNull @Positive
+    private Integer sellerId;
+
+    @NotEmpty
+    private List<@NotNull @Positive Integer> saleListingIds;
+}
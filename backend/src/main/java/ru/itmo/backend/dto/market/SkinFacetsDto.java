@@ -0,0 +1,15 @@
+package ru.itmo.backend.dto.market;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+@Builder
+public class SkinFacetsDto {
+    Integer total;
+    List<FacetValueDto> collection;
+    List<FacetValueDto> rarity;
+    List<FacetValueDto> condition;
+}
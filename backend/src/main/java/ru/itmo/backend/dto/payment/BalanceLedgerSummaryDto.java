@@ -0,0 +1,16 @@
+package ru.itmo.backend.dto.payment;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+@Value
+@Builder
+public class BalanceLedgerSummaryDto {
+    Integer userId;
+    Integer balance;
+    long ledgerNet;
+    Long snapshotLedgerId;
+    LocalDateTime snapshotAt;
+}
@@ -0,0 +1,13 @@
+package ru.itmo.backend.dto.payment;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+@Builder
+public class PaymentOperationPageDto {
+    List<PaymentOperationDto> items;
+    String nextCursor;
+}
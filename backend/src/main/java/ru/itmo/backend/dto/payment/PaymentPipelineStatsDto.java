@@ -0,0 +1,24 @@
+package ru.itmo.backend.dto.payment;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class PaymentPipelineStatsDto {
+    boolean enabled;
+    int queued;
+    int inFlight;
+    int pendingApply;
+    long submitted;
+    long rejected;
+    long approved;
+    long declined;
+    long retries;
+    long leaseExpired;
+    long applyFailed;
+    long appliedBatches;
+    int lastBatchSize;
+    double opsPerSecond;
+    double recentOpsPerSecond;
+}
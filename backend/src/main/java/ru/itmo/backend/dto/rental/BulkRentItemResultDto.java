@@ -0,0 +1,15 @@
+package ru.itmo.backend.dto.rental;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class BulkRentItemResultDto {
+    Integer announcementId;
+    Integer days;
+    Integer cost;
+    Integer rentalContractId;
+    boolean success;
+    String error;
+}
@@ -0,0 +1,30 @@
+package ru.itmo.backend.dto.rental;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BulkRentRequestDto {
+
+    @NotNull @Min(1)
+    private Integer renterId;
+
+    @NotEmpty
+    private List<@Valid Item> items;
+
+    @Data
+    public static class Item {
+
+        @NotNull @Min(1)
+        private Integer announcementId; // это rental_listings.id
+
+        @NotNull @Min(1) @Max(365)
+        private Integer days;
+    }
+}
@@ -0,0 +1,16 @@
+package ru.itmo.backend.dto.rental;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+@Builder
+public class BulkRentResultDto {
+    boolean success;
+    int total;
+    int rented;
+    long totalCost;
+    List<BulkRentItemResultDto> results;
+}
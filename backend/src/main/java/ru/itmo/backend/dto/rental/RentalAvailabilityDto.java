@@ -0,0 +1,17 @@
+package ru.itmo.backend.dto.rental;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Value
+@Builder
+public class RentalAvailabilityDto {
+    Integer listingId;
+    LocalDateTime from;
+    LocalDateTime to;
+    boolean free;
+    List<RentalSlotDto> busy;
+}
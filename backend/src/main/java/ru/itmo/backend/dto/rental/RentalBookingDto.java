@@ -0,0 +1,20 @@
+package ru.itmo.backend.dto.rental;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+@Value
+@Builder
+public class RentalBookingDto {
+    Integer id;
+    Integer listingId;
+    Integer renterId;
+    LocalDateTime startAt;
+    LocalDateTime endAt;
+    Integer days;
+    String status;
+    Integer rentalContractId;
+    String error;
+}
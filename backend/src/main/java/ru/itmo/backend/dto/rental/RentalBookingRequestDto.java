@@ -0,0 +1,24 @@
+package ru.itmo.backend.dto.rental;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class RentalBookingRequestDto {
+
+    @NotNull @Min(1)
+    private Integer renterId;
+
+    @NotNull @Min(1)
+    private Integer announcementId; // это rental_listings.id
+
+    @NotNull
+    private LocalDateTime startAt;
+
+    @NotNull @Min(1) @Max(365)
+    private Integer days;
+}
@@ -0,0 +1,24 @@
+package ru.itmo.backend.dto.rental;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+@Value
+@Builder
+public class RentalExpiryStatsDto {
+    long checks;
+    long idleChecks;
+    long lockedByOtherNode;
+    long runs;
+    long contractsExpired;
+    long failures;
+    LocalDateTime lastRunAt;
+    int lastDue;
+    int lastExpired;
+    long lastDurationMs;
+    long lastLagMs;
+    long maxLagMs;
+    String lastError;
+}
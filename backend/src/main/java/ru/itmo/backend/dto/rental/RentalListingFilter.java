@@ -0,0 +1,14 @@
+package ru.itmo.backend.dto.rental;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class RentalListingFilter {
+    Integer ownerId;
+    Integer skinId;
+    Integer minPricePerDay;
+    Integer maxPricePerDay;
+    Integer minMaxDays;
+}
@@ -0,0 +1,13 @@
+package ru.itmo.backend.dto.rental;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+@Builder
+public class RentalListingPageDto {
+    List<RentalListingDto> items;
+    String nextCursor;
+}
@@ -0,0 +1,13 @@
+package ru.itmo.backend.dto.rental;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+@Value
+@Builder
+public class RentalSlotDto {
+    LocalDateTime startAt;
+    LocalDateTime endAt;
+}
@@ -0,0 +1,11 @@
+package ru.itmo.backend.events;
+
+import lombok.Value;
+import ru.itmo.backend.dto.instant.InstantBuyPriceDto;
+
+import java.util.List;
+
+@Value
+public class InstantPriceChangedEvent {
+    List<InstantBuyPriceDto> prices;
+}
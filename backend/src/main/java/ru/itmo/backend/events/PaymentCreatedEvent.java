@@ -0,0 +1,9 @@
+package ru.itmo.backend.events;
+
+import lombok.Value;
+import ru.itmo.backend.payment.PaymentRequest;
+
+@Value
+public class PaymentCreatedEvent {
+    PaymentRequest request;
+}
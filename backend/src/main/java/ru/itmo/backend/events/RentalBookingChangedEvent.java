@@ -0,0 +1,15 @@
+package ru.itmo.backend.events;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+// booked = false — бронь отменена, провалилась или превратилась в контракт
+@Value
+public class RentalBookingChangedEvent {
+    int bookingId;
+    int rentalListingId;
+    LocalDateTime startAt;
+    LocalDateTime endAt;
+    boolean booked;
+}
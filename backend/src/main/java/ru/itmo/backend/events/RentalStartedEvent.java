@@ -0,0 +1,12 @@
+package ru.itmo.backend.events;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+@Value
+public class RentalStartedEvent {
+    int rentalListingId;
+    LocalDateTime startAt;
+    LocalDateTime endAt;
+}
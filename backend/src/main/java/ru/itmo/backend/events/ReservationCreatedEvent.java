@@ -0,0 +1,8 @@
+package ru.itmo.backend.events;
+
+import lombok.Value;
+
+@Value
+public class ReservationCreatedEvent {
+    int cartItemId;
+}
@@ -0,0 +1,13 @@
+package ru.itmo.backend.events;
+
+import lombok.Value;
+import ru.itmo.backend.model.enums.SaleListingStatus;
+
+// публикуется сервисами при смене статуса листинга, слушатели получают его после коммита
+@Value
+public class SaleListingChangedEvent {
+    Integer saleListingId;
+    Integer skinId;
+    Integer price;
+    SaleListingStatus status;
+}
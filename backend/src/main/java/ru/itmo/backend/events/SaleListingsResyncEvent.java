@@ -0,0 +1,10 @@
+package ru.itmo.backend.events;
+
+import lombok.Value;
+
+// массовое изменение листингов в БД (например, cleanup_expired_reservations), конкретные id неизвестны
+@Value
+public class SaleListingsResyncEvent {
+    String reason;
+    int affected;
+}
@@ -0,0 +1,93 @@
+package ru.itmo.backend.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.itmo.backend.dao.InstantPriceDao;
+import ru.itmo.backend.dto.instant.InstantBuyPriceDto;
+import ru.itmo.backend.events.InstantPriceChangedEvent;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+// последняя instant-цена по каждому скину; после первой загрузки промах означает "цены нет"
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class InstantPriceCache {
+
+    private final InstantPriceDao instantPriceDao;
+
+    private volatile Map<Integer, InstantBuyPriceDto> prices;
+    // снапшот, который сейчас грузится: изменения после коммита во время загрузки попадают и в него,
+    // а строки снапшота не перетирают более свежие цены. guarded by lock
+    private Map<Integer, InstantBuyPriceDto> loading;
+    private final Object lock = new Object();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        reload();
+    }
+
+    // страховка от изменений мимо AdminService (другие инстансы, ручные правки в БД)
+    @Scheduled(initialDelayString = "${app.instant-prices.refreshMs:300000}",
+            fixedDelayString = "${app.instant-prices.refreshMs:300000}")
+    public void refresh() {
+        reload();
+    }
+
+    public synchronized void reload() {
+        Map<Integer, InstantBuyPriceDto> loaded = new ConcurrentHashMap<>();
+        synchronized (lock) {
+            loading = loaded;
+        }
+        List<InstantBuyPriceDto> snapshot;
+        try {
+            snapshot = instantPriceDao.findLatestAll();
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                loading = null;
+            }
+            throw e;
+        }
+        synchronized (lock) {
+            snapshot.forEach(p -> merge(loaded, p));
+            prices = loaded;
+            loading = null;
+        }
+        log.info("Instant price cache loaded: {} skins", loaded.size());
+    }
+
+    public boolean isLoaded() {
+        return prices != null;
+    }
+
+    public Optional<InstantBuyPriceDto> get(int skinId) {
+        Map<Integer, InstantBuyPriceDto> current = prices;
+        return current == null ? Optional.empty() : Optional.ofNullable(current.get(skinId));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPriceChanged(InstantPriceChangedEvent event) {
+        event.getPrices().forEach(this::put);
+    }
+
+    private void put(InstantBuyPriceDto p) {
+        synchronized (lock) {
+            if (prices != null) merge(prices, p);
+            if (loading != null) merge(loading, p);
+        }
+    }
+
+    private static void merge(Map<Integer, InstantBuyPriceDto> map, InstantBuyPriceDto p) {
+        map.merge(p.getSkinId(), p, (old, neu) ->
+                old.getUpdatedAt() != null && neu.getUpdatedAt() != null
+                        && old.getUpdatedAt().isAfter(neu.getUpdatedAt()) ? old : neu);
+    }
+}
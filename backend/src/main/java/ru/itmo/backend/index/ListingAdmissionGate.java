@@ -0,0 +1,77 @@
+package ru.itmo.backend.index;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.itmo.backend.events.SaleListingChangedEvent;
+import ru.itmo.backend.model.enums.SaleListingStatus;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// пропускает в корзину не больше одного запроса на листинг одновременно и помнит недавно занятые листинги,
+// чтобы толпа за одним редким скином отсекалась до транзакции и соединения из пула
+@Component
+public class ListingAdmissionGate {
+
+    private final long markerTtlNanos;
+    private final Set<Integer> inFlight = ConcurrentHashMap.newKeySet();
+    private final Map<Integer, Long> unavailableUntil = new ConcurrentHashMap<>();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public ListingAdmissionGate(@Value("${app.cart.admission.markerTtlMs:2000}") long markerTtlMs) {
+        this.markerTtlNanos = markerTtlMs * 1_000_000;
+    }
+
+    public boolean tryAcquire(int saleListingId) {
+        if (isMarked(saleListingId) || !inFlight.add(saleListingId)) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        // между проверкой и захватом прошлый владелец слота мог пометить листинг и отпустить слот
+        if (isMarked(saleListingId)) {
+            inFlight.remove(saleListingId);
+            rejected.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    public void release(int saleListingId) {
+        inFlight.remove(saleListingId);
+    }
+
+    public void markUnavailable(int saleListingId) {
+        unavailableUntil.put(saleListingId, System.nanoTime() + markerTtlNanos);
+    }
+
+    private boolean isMarked(int saleListingId) {
+        Long until = unavailableUntil.get(saleListingId);
+        if (until == null) return false;
+        if (until - System.nanoTime() > 0) return true;
+        unavailableUntil.remove(saleListingId, until);
+        return false;
+    }
+
+    public long rejectedCount() {
+        return rejected.get();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onListingChanged(SaleListingChangedEvent event) {
+        if (event.getStatus() == SaleListingStatus.ACTIVE) {
+            unavailableUntil.remove(event.getSaleListingId());
+        } else {
+            markUnavailable(event.getSaleListingId());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.cart.admission.purgeMs:10000}")
+    public void purgeExpired() {
+        long now = System.nanoTime();
+        unavailableUntil.entrySet().removeIf(e -> e.getValue() - now <= 0);
+    }
+}
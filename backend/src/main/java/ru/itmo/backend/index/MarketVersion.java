@@ -0,0 +1,84 @@
+package ru.itmo.backend.index;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.itmo.backend.dao.MarketVersionDao;
+import ru.itmo.backend.events.SaleListingChangedEvent;
+import ru.itmo.backend.events.SaleListingsResyncEvent;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// монотонная версия витрины, общая для всех узлов: растёт при каждом изменении листингов или каталога скинов.
+// nextval не транзакционный, поэтому на транзакцию версию двигаем дважды: перед коммитом — чтобы сдвиг
+// не потерялся, если узел упадёт сразу после коммита, и после коммита — чтобы новая версия не появилась
+// раньше новых данных.
+// etag() отвечает из памяти узла, без обращения к БД: свои сдвиги узел видит сразу,
+// чужие — после опроса последовательности раз в pollMs
+@Component
+@RequiredArgsConstructor
+public class MarketVersion {
+
+    private final MarketVersionDao marketVersionDao;
+    // последняя известная узлу версия; -1 — ещё не читали из БД
+    private final AtomicLong known = new AtomicLong(-1);
+
+    @EventListener
+    public void onListingChanged(SaleListingChangedEvent event) {
+        changed();
+    }
+
+    @EventListener
+    public void onResync(SaleListingsResyncEvent event) {
+        changed();
+    }
+
+    @Scheduled(fixedDelayString = "${app.market.version.pollMs:1000}")
+    public void refresh() {
+        advance(marketVersionDao.current());
+    }
+
+    public long bump() {
+        long v = marketVersionDao.bump();
+        advance(v);
+        return v;
+    }
+
+    public long current() {
+        if (known.get() < 0) refresh();
+        return known.get();
+    }
+
+    public String etag() {
+        return "W/\"" + current() + "\"";
+    }
+
+    private void advance(long version) {
+        known.accumulateAndGet(version, Math::max);
+    }
+
+    private void changed() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            bump();
+            return;
+        }
+        // одна пара сдвигов на транзакцию, сколько бы листингов она ни меняла
+        if (TransactionSynchronizationManager.hasResource(this)) return;
+        TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                bump();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResource(MarketVersion.this);
+                if (status == STATUS_COMMITTED) bump();
+            }
+        });
+    }
+}
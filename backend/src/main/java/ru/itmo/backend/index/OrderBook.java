@@ -0,0 +1,172 @@
+package ru.itmo.backend.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.itmo.backend.dao.SaleListingDao;
+import ru.itmo.backend.dto.market.BestAskDto;
+import ru.itmo.backend.dto.market.OrderBookDto;
+import ru.itmo.backend.dto.market.PriceLevelDto;
+import ru.itmo.backend.events.SaleListingChangedEvent;
+import ru.itmo.backend.events.SaleListingsResyncEvent;
+import ru.itmo.backend.model.enums.SaleListingStatus;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// стакан ACTIVE-листингов по скинам: skinId -> уровни цен (по возрастанию) -> листинги в порядке появления
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OrderBook {
+
+    @Value
+    public static class Order {
+        int saleListingId;
+        int skinId;
+        int price;
+    }
+
+    private final SaleListingDao saleListingDao;
+
+    private final Object writeLock = new Object();
+    private volatile Map<Integer, SkinBook> books = new ConcurrentHashMap<>();
+    private volatile Map<Integer, Order> orders = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        rebuild();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onListingChanged(SaleListingChangedEvent event) {
+        if (event.getStatus() == SaleListingStatus.ACTIVE) {
+            add(new Order(event.getSaleListingId(), event.getSkinId(), event.getPrice()));
+        } else {
+            remove(event.getSaleListingId());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onResync(SaleListingsResyncEvent event) {
+        rebuild();
+    }
+
+    public void rebuild() {
+        synchronized (writeLock) {
+            long started = System.nanoTime();
+            Map<Integer, SkinBook> newBooks = new ConcurrentHashMap<>();
+            Map<Integer, Order> newOrders = new ConcurrentHashMap<>();
+
+            for (Order order : saleListingDao.findActiveOrders()) {
+                newOrders.put(order.getSaleListingId(), order);
+                newBooks.computeIfAbsent(order.getSkinId(), id -> new SkinBook()).add(order);
+            }
+
+            books = newBooks;
+            orders = newOrders;
+            log.info("Order book rebuilt: {} listings, {} skins in {} ms",
+                    newOrders.size(), newBooks.size(), (System.nanoTime() - started) / 1_000_000);
+        }
+    }
+
+    public void add(Order order) {
+        synchronized (writeLock) {
+            Order previous = orders.put(order.getSaleListingId(), order);
+            if (previous != null) {
+                SkinBook old = books.get(previous.getSkinId());
+                if (old != null) old.remove(previous);
+            }
+            books.computeIfAbsent(order.getSkinId(), id -> new SkinBook()).add(order);
+        }
+    }
+
+    public void remove(int saleListingId) {
+        synchronized (writeLock) {
+            Order order = orders.remove(saleListingId);
+            if (order == null) return;
+            SkinBook book = books.get(order.getSkinId());
+            if (book != null) book.remove(order);
+        }
+    }
+
+    public Optional<BestAskDto> bestAsk(int skinId) {
+        SkinBook book = books.get(skinId);
+        return book == null ? Optional.empty() : book.bestAsk(skinId);
+    }
+
+    public OrderBookDto depth(int skinId, int depth) {
+        SkinBook book = books.get(skinId);
+        if (book == null) {
+            return OrderBookDto.builder().skinId(skinId).totalListings(0).levels(List.of()).build();
+        }
+        return book.snapshot(skinId, depth);
+    }
+
+    public int size(int skinId) {
+        SkinBook book = books.get(skinId);
+        return book == null ? 0 : book.size();
+    }
+
+    private static final class SkinBook {
+        private final TreeMap<Integer, LinkedHashSet<Integer>> levels = new TreeMap<>();
+        private int size;
+
+        synchronized void add(Order order) {
+            if (levels.computeIfAbsent(order.getPrice(), p -> new LinkedHashSet<>()).add(order.getSaleListingId())) {
+                size++;
+            }
+        }
+
+        synchronized void remove(Order order) {
+            LinkedHashSet<Integer> level = levels.get(order.getPrice());
+            if (level != null && level.remove(order.getSaleListingId())) {
+                size--;
+                if (level.isEmpty()) levels.remove(order.getPrice());
+            }
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized Optional<BestAskDto> bestAsk(int skinId) {
+            Map.Entry<Integer, LinkedHashSet<Integer>> best = levels.firstEntry();
+            if (best == null) return Optional.empty();
+            return Optional.of(BestAskDto.builder()
+                    .skinId(skinId)
+                    .price(best.getKey())
+                    .saleListingId(best.getValue().iterator().next())
+                    .build());
+        }
+
+        synchronized OrderBookDto snapshot(int skinId, int depth) {
+            List<PriceLevelDto> result = new ArrayList<>(Math.min(depth, levels.size()));
+            Iterator<Map.Entry<Integer, LinkedHashSet<Integer>>> it = levels.entrySet().iterator();
+            while (it.hasNext() && result.size() < depth) {
+                Map.Entry<Integer, LinkedHashSet<Integer>> level = it.next();
+                result.add(PriceLevelDto.builder()
+                        .price(level.getKey())
+                        .quantity(level.getValue().size())
+                        .firstSaleListingId(level.getValue().iterator().next())
+                        .build());
+            }
+            return OrderBookDto.builder()
+                    .skinId(skinId)
+                    .totalListings(size)
+                    .bestAsk(levels.isEmpty() ? null : levels.firstKey())
+                    .levels(result)
+                    .build();
+        }
+    }
+}
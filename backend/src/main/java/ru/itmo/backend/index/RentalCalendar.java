@@ -0,0 +1,184 @@
+package ru.itmo.backend.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.itmo.backend.dao.RentalBookingDao;
+import ru.itmo.backend.dto.rental.RentalSlotDto;
+import ru.itmo.backend.events.RentalBookingChangedEvent;
+import ru.itmo.backend.events.RentalStartedEvent;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// занятые интервалы [start, end) по каждому листингу: идущие контракты и будущие брони.
+// интервалы одного листинга не пересекаются, поэтому дерева по началу достаточно:
+// пересечение с [from, to) может дать только последний интервал, начавшийся раньше to
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RentalCalendar {
+
+    private final RentalBookingDao rentalBookingDao;
+
+    private volatile Map<Integer, NavigableMap<LocalDateTime, Slot>> byListing;
+    // снапшот, который сейчас грузится, и брони, снятые за время загрузки: события после коммита
+    // применяются и к нему, а снятая бронь не возвращается из более старого снапшота. guarded by lock
+    private Map<Integer, NavigableMap<LocalDateTime, Slot>> loading;
+    private Set<Integer> removedWhileLoading;
+    private final Object lock = new Object();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        reload();
+    }
+
+    // страховка от изменений с других узлов
+    @Scheduled(initialDelayString = "${app.rentals.calendar.refreshMs:300000}",
+            fixedDelayString = "${app.rentals.calendar.refreshMs:300000}")
+    public void refresh() {
+        reload();
+    }
+
+    public synchronized void reload() {
+        Map<Integer, NavigableMap<LocalDateTime, Slot>> loaded = new ConcurrentHashMap<>();
+        synchronized (lock) {
+            loading = loaded;
+            removedWhileLoading = new HashSet<>();
+        }
+        List<RentalBookingDao.Slot> slots;
+        try {
+            slots = rentalBookingDao.findCalendarSlots();
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                loading = null;
+                removedWhileLoading = null;
+            }
+            throw e;
+        }
+        synchronized (lock) {
+            for (RentalBookingDao.Slot s : slots) {
+                if (s.getBookingId() != null && removedWhileLoading.contains(s.getBookingId())) continue;
+                put(loaded, s.getRentalListingId(), new Slot(s.getStartAt(), s.getEndAt(), s.getBookingId()));
+            }
+            byListing = loaded;
+            loading = null;
+            removedWhileLoading = null;
+        }
+        log.info("Rental calendar loaded: {} intervals on {} listings", slots.size(), loaded.size());
+    }
+
+    public boolean isFree(int rentalListingId, LocalDateTime from, LocalDateTime to) {
+        NavigableMap<LocalDateTime, Slot> slots = slots(rentalListingId);
+        if (slots == null) return true;
+        synchronized (slots) {
+            Map.Entry<LocalDateTime, Slot> last = slots.lowerEntry(to);
+            return last == null || !last.getValue().end.isAfter(from);
+        }
+    }
+
+    public List<RentalSlotDto> busy(int rentalListingId, LocalDateTime from, LocalDateTime to) {
+        NavigableMap<LocalDateTime, Slot> slots = slots(rentalListingId);
+        if (slots == null) return List.of();
+        List<RentalSlotDto> result = new ArrayList<>();
+        synchronized (slots) {
+            LocalDateTime first = slots.floorKey(from);
+            for (Slot s : slots.subMap(first == null ? from : first, true, to, false).values()) {
+                if (s.end.isAfter(from)) {
+                    result.add(RentalSlotDto.builder().startAt(s.start).endAt(s.end).build());
+                }
+            }
+        }
+        return result;
+    }
+
+    // самое раннее начало окна длиной length не раньше from
+    public LocalDateTime nextFree(int rentalListingId, LocalDateTime from, Duration length) {
+        NavigableMap<LocalDateTime, Slot> slots = slots(rentalListingId);
+        if (slots == null) return from;
+        synchronized (slots) {
+            LocalDateTime start = from;
+            Map.Entry<LocalDateTime, Slot> prev = slots.floorEntry(start);
+            if (prev != null && prev.getValue().end.isAfter(start)) start = prev.getValue().end;
+            for (Slot s : slots.tailMap(start, true).values()) {
+                if (!s.start.isBefore(start.plus(length))) break;
+                if (s.end.isAfter(start)) start = s.end;
+            }
+            return start;
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookingChanged(RentalBookingChangedEvent event) {
+        synchronized (lock) {
+            if (byListing != null) applyBooking(byListing, event);
+            if (loading != null) applyBooking(loading, event);
+            if (removedWhileLoading != null && !event.isBooked()) removedWhileLoading.add(event.getBookingId());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRentalStarted(RentalStartedEvent event) {
+        if (event.getStartAt() == null || event.getEndAt() == null) return;
+        Slot slot = new Slot(event.getStartAt(), event.getEndAt(), null);
+        synchronized (lock) {
+            if (byListing != null) put(byListing, event.getRentalListingId(), slot);
+            if (loading != null) put(loading, event.getRentalListingId(), slot);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.rentals.calendar.purgeMs:60000}")
+    public void purgeExpired() {
+        Map<Integer, NavigableMap<LocalDateTime, Slot>> current = byListing;
+        if (current == null) return;
+        LocalDateTime now = LocalDateTime.now();
+        current.values().forEach(slots -> {
+            synchronized (slots) {
+                slots.values().removeIf(s -> !s.end.isAfter(now));
+            }
+        });
+    }
+
+    private NavigableMap<LocalDateTime, Slot> slots(int rentalListingId) {
+        Map<Integer, NavigableMap<LocalDateTime, Slot>> current = byListing;
+        return current == null ? null : current.get(rentalListingId);
+    }
+
+    private static void applyBooking(Map<Integer, NavigableMap<LocalDateTime, Slot>> map, RentalBookingChangedEvent event) {
+        if (event.isBooked()) {
+            put(map, event.getRentalListingId(), new Slot(event.getStartAt(), event.getEndAt(), event.getBookingId()));
+            return;
+        }
+        NavigableMap<LocalDateTime, Slot> slots = map.get(event.getRentalListingId());
+        if (slots == null) return;
+        synchronized (slots) {
+            Slot s = slots.get(event.getStartAt());
+            if (s != null && s.bookingId != null && s.bookingId == event.getBookingId()) {
+                slots.remove(event.getStartAt());
+            }
+        }
+    }
+
+    private static void put(Map<Integer, NavigableMap<LocalDateTime, Slot>> map, int rentalListingId, Slot slot) {
+        NavigableMap<LocalDateTime, Slot> slots = map.computeIfAbsent(rentalListingId, id -> new TreeMap<>());
+        synchronized (slots) {
+            // совпавшие начала в норме не встречаются; на всякий случай держим более длинный интервал
+            slots.merge(slot.start, slot, (old, neu) -> old.end.isAfter(neu.end) ? old : neu);
+        }
+    }
+
+    private record Slot(LocalDateTime start, LocalDateTime end, Integer bookingId) {
+    }
+}
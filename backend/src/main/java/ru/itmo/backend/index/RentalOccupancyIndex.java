@@ -0,0 +1,99 @@
+package ru.itmo.backend.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.itmo.backend.dao.RentalDao;
+import ru.itmo.backend.events.RentalStartedEvent;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// сданные в аренду листинги -> конец активного контракта; запись с прошедшим концом считается свободной
+// сама по себе, без cleanup_expired_rentals и без подзапроса к rental_contracts
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RentalOccupancyIndex {
+
+    private final RentalDao rentalDao;
+
+    private volatile Map<Integer, LocalDateTime> rentedUntil;
+    // снапшот, который сейчас грузится: аренды, начатые во время загрузки, попадают и в него. guarded by lock
+    private Map<Integer, LocalDateTime> loading;
+    private final Object lock = new Object();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        reload();
+    }
+
+    // страховка от аренд мимо RentalService (другие инстансы, ручные правки в БД)
+    @Scheduled(initialDelayString = "${app.rentals.occupancy.refreshMs:300000}",
+            fixedDelayString = "${app.rentals.occupancy.refreshMs:300000}")
+    public void refresh() {
+        reload();
+    }
+
+    public synchronized void reload() {
+        Map<Integer, LocalDateTime> loaded = new ConcurrentHashMap<>();
+        synchronized (lock) {
+            loading = loaded;
+        }
+        Map<Integer, LocalDateTime> snapshot;
+        try {
+            snapshot = rentalDao.findActiveRentalEnds();
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                loading = null;
+            }
+            throw e;
+        }
+        synchronized (lock) {
+            snapshot.forEach((id, until) -> merge(loaded, id, until));
+            rentedUntil = loaded;
+            loading = null;
+        }
+        log.info("Rental occupancy index loaded: {} rented listings", loaded.size());
+    }
+
+    public boolean isLoaded() {
+        return rentedUntil != null;
+    }
+
+    public boolean isRented(int rentalListingId) {
+        Map<Integer, LocalDateTime> current = rentedUntil;
+        if (current == null) return false;
+        LocalDateTime until = current.get(rentalListingId);
+        if (until == null) return false;
+        if (until.isAfter(LocalDateTime.now())) return true;
+        current.remove(rentalListingId, until);
+        return false;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRentalStarted(RentalStartedEvent event) {
+        if (event.getEndAt() == null) return;
+        synchronized (lock) {
+            if (rentedUntil != null) merge(rentedUntil, event.getRentalListingId(), event.getEndAt());
+            if (loading != null) merge(loading, event.getRentalListingId(), event.getEndAt());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.rentals.occupancy.purgeMs:60000}")
+    public void purgeExpired() {
+        Map<Integer, LocalDateTime> current = rentedUntil;
+        if (current == null) return;
+        LocalDateTime now = LocalDateTime.now();
+        current.values().removeIf(until -> !until.isAfter(now));
+    }
+
+    private static void merge(Map<Integer, LocalDateTime> map, int rentalListingId, LocalDateTime until) {
+        map.merge(rentalListingId, until, (old, neu) -> old.isAfter(neu) ? old : neu);
+    }
+}
@@ -0,0 +1,394 @@
+package ru.itmo.backend.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.itmo.backend.dto.market.FacetValueDto;
+import ru.itmo.backend.dto.market.SkinFacetsDto;
+import ru.itmo.backend.dto.market.SkinPreviewDto;
+import ru.itmo.backend.model.Skin;
+import ru.itmo.backend.repository.SkinRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.IntUnaryOperator;
+
+// инвертированный индекс n-грамм (1..3 символа) по Skin.name + битмапы значений фасетов;
+// снапшот неизменяемый и подменяется целиком
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SkinSearchIndex {
+
+    private static final int GRAM = 3;
+    private static final int[] EMPTY = new int[0];
+
+    private final SkinRepository skinRepository;
+    private final MarketVersion marketVersion;
+
+    private volatile Snapshot snapshot;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        rebuild();
+    }
+
+    @Scheduled(initialDelayString = "${app.skins.indexRefreshMs:300000}",
+            fixedDelayString = "${app.skins.indexRefreshMs:300000}")
+    public void refresh() {
+        rebuild();
+    }
+
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    public void rebuild() {
+        long started = System.nanoTime();
+        List<Skin> skins = skinRepository.findAll();
+        skins.sort(Comparator.comparing(Skin::getId));
+        Snapshot previous = snapshot;
+        snapshot = Snapshot.build(skins);
+        if (previous == null || previous.fingerprint != snapshot.fingerprint) {
+            marketVersion.bump();
+        }
+        log.info("Skin search index rebuilt: {} skins, {} grams in {} ms",
+                skins.size(), snapshot.grams.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    public List<SkinPreviewDto> search(String q, String collection, String rarity, String condition, int limit) {
+        Snapshot s = snapshot;
+        if (s == null) return List.of();
+
+        String needle = q == null ? "" : q.trim().toLowerCase(Locale.ROOT);
+        List<Integer> matches = new ArrayList<>();
+
+        if (needle.isEmpty()) {
+            for (int doc = 0; doc < s.size && matches.size() < limit; doc++) {
+                if (s.matchesFilters(doc, collection, rarity, condition)) matches.add(doc);
+            }
+            return s.toDtos(matches);
+        }
+
+        // ключ сортировки упакован в long: ранг | позиция | длина | doc — без боксинга и компараторов
+        TopK top = new TopK(limit);
+        for (int doc : s.candidates(needle)) {
+            String name = s.lowerNames[doc];
+            int pos = name.indexOf(needle);
+            if (pos < 0 || !s.matchesFilters(doc, collection, rarity, condition)) continue;
+            long key = ((long) rank(name, needle, pos) << 56)
+                    | ((long) Math.min(pos, 0xFF) << 48)
+                    | ((long) Math.min(name.length(), 0xFFFF) << 32)
+                    | doc;
+            top.offer(key);
+        }
+        for (long key : top.sorted()) {
+            matches.add((int) key);
+        }
+        return s.toDtos(matches);
+    }
+
+    // счётчики по каждому фасету считаются без его собственного фильтра, чтобы в выпадающем списке
+    // оставались альтернативы; activeListings == null — без подсчёта листингов
+    public SkinFacetsDto facets(String q, String collection, String rarity, String condition,
+                                IntUnaryOperator activeListings) {
+        Snapshot s = snapshot;
+        if (s == null) {
+            return SkinFacetsDto.builder().total(0).collection(List.of()).rarity(List.of()).condition(List.of()).build();
+        }
+
+        String needle = q == null ? "" : q.trim().toLowerCase(Locale.ROOT);
+        BitSet base = s.matching(needle);
+        BitSet byCollection = s.collectionFacet.filter(collection);
+        BitSet byRarity = s.rarityFacet.filter(rarity);
+        BitSet byCondition = s.conditionFacet.filter(condition);
+
+        BitSet total = and(base, byCollection, byRarity, byCondition);
+
+        return SkinFacetsDto.builder()
+                .total(total.cardinality())
+                .collection(s.collectionFacet.count(and(base, byRarity, byCondition), collection, s.ids, activeListings))
+                .rarity(s.rarityFacet.count(and(base, byCollection, byCondition), rarity, s.ids, activeListings))
+                .condition(s.conditionFacet.count(and(base, byCollection, byRarity), condition, s.ids, activeListings))
+                .build();
+    }
+
+    private static BitSet and(BitSet base, BitSet... filters) {
+        BitSet result = (BitSet) base.clone();
+        for (BitSet f : filters) {
+            if (f != null) result.and(f);
+        }
+        return result;
+    }
+
+    // точное совпадение, затем префикс, затем начало слова, затем остальные
+    private static int rank(String name, String needle, int pos) {
+        if (pos == 0) return name.length() == needle.length() ? 0 : 1;
+        if (!Character.isLetterOrDigit(name.charAt(pos - 1))) return 2;
+        return 3;
+    }
+
+    // ограниченная max-куча: хранит limit наименьших ключей
+    private static final class TopK {
+        private final long[] heap;
+        private int size;
+
+        TopK(int capacity) {
+            this.heap = new long[capacity];
+        }
+
+        void offer(long key) {
+            if (heap.length == 0) return;
+            if (size < heap.length) {
+                heap[size] = key;
+                siftUp(size++);
+            } else if (key < heap[0]) {
+                heap[0] = key;
+                siftDown(0);
+            }
+        }
+
+        long[] sorted() {
+            long[] result = Arrays.copyOf(heap, size);
+            Arrays.sort(result);
+            return result;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (heap[parent] >= heap[i]) return;
+                swap(parent, i);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int left = 2 * i + 1, right = left + 1, largest = i;
+                if (left < size && heap[left] > heap[largest]) largest = left;
+                if (right < size && heap[right] > heap[largest]) largest = right;
+                if (largest == i) return;
+                swap(i, largest);
+                i = largest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            long t = heap[a];
+            heap[a] = heap[b];
+            heap[b] = t;
+        }
+    }
+
+    private static final class Snapshot {
+        final int size;
+        final int[] ids;
+        final String[] names;
+        final String[] lowerNames;
+        final String[] collections;
+        final String[] rarities;
+        final String[] conditions;
+        final Map<String, int[]> grams;
+        Facet collectionFacet;
+        Facet rarityFacet;
+        Facet conditionFacet;
+        long fingerprint;
+
+        private Snapshot(int size) {
+            this.size = size;
+            this.ids = new int[size];
+            this.names = new String[size];
+            this.lowerNames = new String[size];
+            this.collections = new String[size];
+            this.rarities = new String[size];
+            this.conditions = new String[size];
+            this.grams = new HashMap<>();
+        }
+
+        static Snapshot build(List<Skin> skins) {
+            Snapshot s = new Snapshot(skins.size());
+            Map<String, int[]> postings = new HashMap<>();
+            Map<String, Integer> counts = new HashMap<>();
+
+            for (int doc = 0; doc < skins.size(); doc++) {
+                Skin skin = skins.get(doc);
+                s.ids[doc] = skin.getId();
+                s.names[doc] = skin.getName();
+                s.lowerNames[doc] = skin.getName() == null ? "" : skin.getName().toLowerCase(Locale.ROOT);
+                s.collections[doc] = skin.getCollection();
+                s.rarities[doc] = skin.getRarity();
+                s.conditions[doc] = skin.getCondition();
+                s.fingerprint = 31 * s.fingerprint + Objects.hash(
+                        skin.getId(), skin.getName(), skin.getCollection(), skin.getRarity(), skin.getCondition());
+
+                for (String gram : gramsOf(s.lowerNames[doc])) {
+                    int[] list = postings.get(gram);
+                    int n = counts.getOrDefault(gram, 0);
+                    if (list == null) {
+                        list = new int[4];
+                    } else if (n == list.length) {
+                        list = Arrays.copyOf(list, n * 2);
+                    }
+                    list[n] = doc;
+                    postings.put(gram, list);
+                    counts.put(gram, n + 1);
+                }
+            }
+
+            // документы добавлялись по возрастанию, так что списки уже отсортированы
+            postings.forEach((gram, list) -> s.grams.put(gram, Arrays.copyOf(list, counts.get(gram))));
+
+            s.collectionFacet = Facet.build(s.collections);
+            s.rarityFacet = Facet.build(s.rarities);
+            s.conditionFacet = Facet.build(s.conditions);
+            return s;
+        }
+
+        BitSet matching(String needle) {
+            BitSet result = new BitSet(size);
+            if (needle.isEmpty()) {
+                result.set(0, size);
+                return result;
+            }
+            for (int doc : candidates(needle)) {
+                if (lowerNames[doc].contains(needle)) result.set(doc);
+            }
+            return result;
+        }
+
+        static Set<String> gramsOf(String text) {
+            Set<String> result = new HashSet<>();
+            for (int len = 1; len <= GRAM; len++) {
+                for (int i = 0; i + len <= text.length(); i++) {
+                    result.add(text.substring(i, i + len));
+                }
+            }
+            return result;
+        }
+
+        int[] candidates(String needle) {
+            if (needle.length() <= GRAM) {
+                return grams.getOrDefault(needle, EMPTY);
+            }
+            List<int[]> lists = new ArrayList<>();
+            for (int i = 0; i + GRAM <= needle.length(); i++) {
+                int[] list = grams.get(needle.substring(i, i + GRAM));
+                if (list == null) return EMPTY;
+                lists.add(list);
+            }
+            lists.sort(Comparator.comparingInt(l -> l.length));
+
+            int[] result = lists.get(0);
+            for (int i = 1; i < lists.size() && result.length > 0; i++) {
+                result = intersect(result, lists.get(i));
+            }
+            return result;
+        }
+
+        static int[] intersect(int[] a, int[] b) {
+            int[] out = new int[Math.min(a.length, b.length)];
+            int i = 0, j = 0, n = 0;
+            while (i < a.length && j < b.length) {
+                if (a[i] < b[j]) i++;
+                else if (a[i] > b[j]) j++;
+                else {
+                    out[n++] = a[i];
+                    i++;
+                    j++;
+                }
+            }
+            return Arrays.copyOf(out, n);
+        }
+
+        boolean matchesFilters(int doc, String collection, String rarity, String condition) {
+            return (collection == null || collection.equals(collections[doc]))
+                    && (rarity == null || rarity.equals(rarities[doc]))
+                    && (condition == null || condition.equals(conditions[doc]));
+        }
+
+        List<SkinPreviewDto> toDtos(List<Integer> docs) {
+            return docs.stream()
+                    .map(doc -> SkinPreviewDto.builder()
+                            .id(ids[doc])
+                            .name(names[doc])
+                            .collection(collections[doc])
+                            .rarity(rarities[doc])
+                            .condition(conditions[doc])
+                            .build())
+                    .toList();
+        }
+    }
+
+    private static final class Facet {
+        final String[] values;
+        final BitSet[] postings;
+        final Map<String, Integer> ordinals = new HashMap<>();
+
+        private Facet(String[] values, BitSet[] postings) {
+            this.values = values;
+            this.postings = postings;
+        }
+
+        static Facet build(String[] column) {
+            TreeSet<String> distinct = new TreeSet<>();
+            for (String v : column) {
+                if (v != null) distinct.add(v);
+            }
+            String[] values = distinct.toArray(String[]::new);
+            BitSet[] postings = new BitSet[values.length];
+            Facet facet = new Facet(values, postings);
+            for (int i = 0; i < values.length; i++) {
+                facet.ordinals.put(values[i], i);
+                postings[i] = new BitSet(column.length);
+            }
+            for (int doc = 0; doc < column.length; doc++) {
+                if (column[doc] != null) postings[facet.ordinals.get(column[doc])].set(doc);
+            }
+            return facet;
+        }
+
+        // null — фильтр не задан
+        BitSet filter(String value) {
+            if (value == null) return null;
+            Integer ordinal = ordinals.get(value);
+            return ordinal == null ? new BitSet() : postings[ordinal];
+        }
+
+        List<FacetValueDto> count(BitSet scope, String selected, int[] ids, IntUnaryOperator activeListings) {
+            List<FacetValueDto> result = new ArrayList<>();
+            for (int i = 0; i < values.length; i++) {
+                BitSet hits = (BitSet) postings[i].clone();
+                hits.and(scope);
+                int count = hits.cardinality();
+                if (count == 0 && !values[i].equals(selected)) continue;
+
+                Integer listings = null;
+                if (activeListings != null) {
+                    int sum = 0;
+                    for (int doc = hits.nextSetBit(0); doc >= 0; doc = hits.nextSetBit(doc + 1)) {
+                        sum += activeListings.applyAsInt(ids[doc]);
+                    }
+                    listings = sum;
+                }
+                result.add(FacetValueDto.builder().value(values[i]).count(count).activeListings(listings).build());
+            }
+            result.sort(Comparator.comparing(FacetValueDto::getCount).reversed()
+                    .thenComparing(FacetValueDto::getValue));
+            return result;
+        }
+    }
+}
@@ -5,21 +5,21 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
-import ru.itmo.backend.dao.CleanupDao;
+import ru.itmo.backend.dao.BalanceDao;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
-public class ReservationCleanupScheduler {
+public class BalanceSnapshotJob {
 
-    private final CleanupDao dao;
+    private final BalanceDao balanceDao;
 
-    @Scheduled(fixedDelayString = "${app.reservations.cleanupDelayMs:30000}")
+    @Scheduled(fixedDelayString = "${app.balance.snapshotMs:300000}")
     @Transactional
     public void run() {
-        int cleared = dao.cleanupExpiredReservations();
-        if (cleared > 0) {
-            log.info("cleanup_expired_reservations cleared {}", cleared);
+        int users = balanceDao.rollUpSnapshots();
+        if (users > 0) {
+            log.info("Balance snapshots updated for {} users", users);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,125 @@
+package ru.itmo.backend.jobs;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.itmo.backend.dao.CleanupDao;
+import ru.itmo.backend.dao.SaleListingDao;
+import ru.itmo.backend.dto.CleanupRunStatsDto;
+import ru.itmo.backend.events.SaleListingChangedEvent;
+import ru.itmo.backend.index.OrderBook;
+import ru.itmo.backend.model.enums.SaleListingStatus;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+
+// чистка истекших резервов, безопасная для нескольких узлов:
+// каждая порция — своя короткая транзакция, чужие заблокированные строки пропускаются
+@Slf4j
+@Component
+public class ExpiredCleanupWorker {
+
+    private final CleanupDao cleanupDao;
+    private final SaleListingDao saleListingDao;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate tx;
+    private final int chunkSize;
+    private final int maxChunks;
+
+    private final RunStats reservationStats = new RunStats("reservations");
+
+    public ExpiredCleanupWorker(CleanupDao cleanupDao,
+                                SaleListingDao saleListingDao,
+                                ApplicationEventPublisher eventPublisher,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${app.cleanup.chunkSize:500}") int chunkSize,
+                                @Value("${app.cleanup.maxChunksPerRun:50}") int maxChunks) {
+        this.cleanupDao = cleanupDao;
+        this.saleListingDao = saleListingDao;
+        this.eventPublisher = eventPublisher;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.maxChunks = maxChunks;
+    }
+
+    // страховочный проход; по срокам резервы снимает ReservationExpiryTracker
+    @Scheduled(fixedDelayString = "${app.reservations.cleanupDelayMs:600000}")
+    public void cleanupReservations() {
+        long started = System.nanoTime();
+        int cleared = 0;
+        int chunks = 0;
+        try {
+            while (chunks < maxChunks) {
+                Integer n = tx.execute(status -> releaseReservationsChunk());
+                chunks++;
+                cleared += n == null ? 0 : n;
+                if (n == null || n < chunkSize) break;
+            }
+            reservationStats.record(cleared, chunks, started, null);
+        } catch (RuntimeException e) {
+            reservationStats.record(cleared, chunks, started, e.getMessage());
+            log.warn("Reservation cleanup failed after {} chunks", chunks, e);
+            return;
+        }
+        if (cleared > 0) {
+            log.info("Reservation cleanup cleared {} in {} chunks", cleared, chunks);
+        }
+    }
+
+    public List<CleanupRunStatsDto> stats() {
+        return List.of(reservationStats.toDto());
+    }
+
+    private int releaseReservationsChunk() {
+        List<Integer> listingIds = cleanupDao.releaseExpiredReservations(null, chunkSize);
+        if (listingIds.isEmpty()) return 0;
+        for (OrderBook.Order o : saleListingDao.findActiveOrders(new HashSet<>(listingIds))) {
+            eventPublisher.publishEvent(new SaleListingChangedEvent(
+                    o.getSaleListingId(), o.getSkinId(), o.getPrice(), SaleListingStatus.ACTIVE));
+        }
+        return listingIds.size();
+    }
+
+    private static final class RunStats {
+        private final String job;
+        private LocalDateTime lastRunAt;
+        private int lastRowsCleared;
+        private int lastChunks;
+        private long lastDurationMs;
+        private long totalRuns;
+        private long totalRowsCleared;
+        private String lastError;
+
+        RunStats(String job) {
+            this.job = job;
+        }
+
+        synchronized void record(int cleared, int chunks, long startedNanos, String error) {
+            lastRunAt = LocalDateTime.now();
+            lastRowsCleared = cleared;
+            lastChunks = chunks;
+            lastDurationMs = (System.nanoTime() - startedNanos) / 1_000_000;
+            totalRuns++;
+            totalRowsCleared += cleared;
+            lastError = error;
+        }
+
+        synchronized CleanupRunStatsDto toDto() {
+            return CleanupRunStatsDto.builder()
+                    .job(job)
+                    .lastRunAt(lastRunAt)
+                    .lastRowsCleared(lastRowsCleared)
+                    .lastChunks(lastChunks)
+                    .lastDurationMs(lastDurationMs)
+                    .totalRuns(totalRuns)
+                    .totalRowsCleared(totalRowsCleared)
+                    .lastError(lastError)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package ru.itmo.backend.jobs;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.itmo.backend.dao.RentalBookingDao;
+import ru.itmo.backend.dao.RentalDao;
+import ru.itmo.backend.dto.rental.RentResult;
+import ru.itmo.backend.dto.rental.RentalBookingDto;
+import ru.itmo.backend.events.RentalBookingChangedEvent;
+import ru.itmo.backend.events.RentalStartedEvent;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// наступившая бронь превращается в обычный контракт через rent_skin: оплата списывается в момент начала.
+// порции берутся с SKIP LOCKED, поэтому несколько узлов не активируют одну бронь дважды
+@Slf4j
+@Component
+public class RentalBookingActivator {
+
+    private final RentalBookingDao rentalBookingDao;
+    private final RentalDao rentalDao;
+    private final RentalExpiryWorker rentalExpiryWorker;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate tx;
+    private final TransactionTemplate nested;
+    private final int batchSize;
+    private final Duration retryGrace;
+
+    public RentalBookingActivator(RentalBookingDao rentalBookingDao,
+                                  RentalDao rentalDao,
+                                  RentalExpiryWorker rentalExpiryWorker,
+                                  ApplicationEventPublisher eventPublisher,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${app.rentals.bookings.batchSize:100}") int batchSize,
+                                  @Value("${app.rentals.bookings.retryGraceMs:3600000}") long retryGraceMs) {
+        this.rentalBookingDao = rentalBookingDao;
+        this.rentalDao = rentalDao;
+        this.rentalExpiryWorker = rentalExpiryWorker;
+        this.eventPublisher = eventPublisher;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.nested = new TransactionTemplate(transactionManager);
+        this.nested.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED);
+        this.batchSize = batchSize;
+        this.retryGrace = Duration.ofMillis(retryGraceMs);
+    }
+
+    @Scheduled(fixedDelayString = "${app.rentals.bookings.activateMs:10000}")
+    public void activateDue() {
+        // контракт, закончившийся прямо перед бронью, должен быть закрыт до rent_skin
+        rentalExpiryWorker.expireDue();
+        try {
+            while (true) {
+                Integer n = tx.execute(status -> activateBatch(LocalDateTime.now()));
+                if (n == null || n < batchSize) return;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Rental booking activation failed", e);
+        }
+    }
+
+    // возвращает число обработанных броней; отложенные до следующего запуска не считаются
+    int activateBatch(LocalDateTime now) {
+        List<RentalBookingDto> due = rentalBookingDao.lockDue(batchSize);
+        int processed = 0;
+        for (RentalBookingDto b : due) {
+            RentResult result;
+            try {
+                result = nested.execute(status -> rentalDao.rentSkin(b.getRenterId(), b.getListingId(), b.getDays()));
+            } catch (DataAccessException e) {
+                result = RentResult.builder().success(false).message("Rent failed").build();
+            }
+
+            if (result != null && result.isSuccess() && result.getRentalContractId() != null) {
+                // контракт занимает ровно окно брони, иначе он залезет на следующую бронь встык
+                rentalDao.setContractPeriod(result.getRentalContractId(), b.getStartAt(), b.getEndAt());
+                rentalBookingDao.markStarted(b.getId(), result.getRentalContractId());
+                rentalDao.findContractPeriod(result.getRentalContractId()).ifPresent(p ->
+                        eventPublisher.publishEvent(new RentalStartedEvent(b.getListingId(), p.getStartAt(), p.getEndAt())));
+            } else if (now.isBefore(b.getStartAt().plus(retryGrace))
+                    && rentalBookingDao.hasOverdueContract(b.getListingId(), b.getStartAt())) {
+                // предыдущий контракт закончился к началу брони, но ещё не закрыт (например, закрытие
+                // сейчас идёт на другом узле): бронь остаётся BOOKED до следующего запуска
+                log.debug("Rental booking {} deferred: previous contract is not closed yet", b.getId());
+                continue;
+            } else {
+                String error = result == null || result.getMessage() == null ? "Rent failed" : result.getMessage();
+                rentalBookingDao.markFailed(b.getId(), error);
+                log.info("Rental booking {} failed to start: {}", b.getId(), error);
+            }
+            eventPublisher.publishEvent(new RentalBookingChangedEvent(
+                    b.getId(), b.getListingId(), b.getStartAt(), b.getEndAt(), false));
+            processed++;
+        }
+        return processed;
+    }
+}
@@ -0,0 +1,125 @@
+package ru.itmo.backend.jobs;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.itmo.backend.dao.CleanupDao;
+import ru.itmo.backend.dto.rental.RentalExpiryStatsDto;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+// истечение аренд: частая дешёвая проверка по частичному индексу на end_at,
+// а cleanup_expired_rentals запускается, только когда есть что завершать.
+// при частых проверках каждый запуск забирает лишь то, что истекло с прошлого раза
+@Slf4j
+@Component
+public class RentalExpiryWorker {
+
+    private final CleanupDao cleanupDao;
+    private final TransactionTemplate tx;
+
+    private long checks;
+    private long idleChecks;
+    private long lockedByOtherNode;
+    private long runs;
+    private long contractsExpired;
+    private long failures;
+    private LocalDateTime lastRunAt;
+    private int lastDue;
+    private int lastExpired;
+    private long lastDurationMs;
+    private long lastLagMs;
+    private long maxLagMs;
+    private String lastError;
+
+    public RentalExpiryWorker(CleanupDao cleanupDao, PlatformTransactionManager transactionManager) {
+        this.cleanupDao = cleanupDao;
+        this.tx = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(fixedDelayString = "${app.rentals.expiry.checkMs:5000}")
+    public void expireDue() {
+        long started = System.nanoTime();
+        CleanupDao.RentalDue due;
+        try {
+            due = cleanupDao.findRentalDue();
+        } catch (RuntimeException e) {
+            recordFailure(0, started, e);
+            log.warn("Rental expiry check failed", e);
+            return;
+        }
+        if (due.getCount() == 0) {
+            synchronized (this) {
+                checks++;
+                idleChecks++;
+            }
+            return;
+        }
+
+        // возврат предметов живёт внутри cleanup_expired_rentals, поэтому узлы не делят работу, а уступают её:
+        // кто не взял advisory lock, пропускает запуск — контракты завершит владелец блокировки
+        try {
+            Integer expired = tx.execute(status -> cleanupDao.cleanupExpiredRentalsIfFree());
+            if (expired == null) {
+                synchronized (this) {
+                    checks++;
+                    lockedByOtherNode++;
+                }
+                return;
+            }
+            record(due, expired, started);
+            if (expired > 0) {
+                log.info("Rental expiry: {} contracts completed", expired);
+            }
+        } catch (RuntimeException e) {
+            recordFailure(due.getCount(), started, e);
+            log.warn("Rental expiry failed for {} due contracts", due.getCount(), e);
+        }
+    }
+
+    public synchronized RentalExpiryStatsDto stats() {
+        return RentalExpiryStatsDto.builder()
+                .checks(checks)
+                .idleChecks(idleChecks)
+                .lockedByOtherNode(lockedByOtherNode)
+                .runs(runs)
+                .contractsExpired(contractsExpired)
+                .failures(failures)
+                .lastRunAt(lastRunAt)
+                .lastDue(lastDue)
+                .lastExpired(lastExpired)
+                .lastDurationMs(lastDurationMs)
+                .lastLagMs(lastLagMs)
+                .maxLagMs(maxLagMs)
+                .lastError(lastError)
+                .build();
+    }
+
+    private synchronized void record(CleanupDao.RentalDue due, int expired, long startedNanos) {
+        LocalDateTime now = LocalDateTime.now();
+        checks++;
+        runs++;
+        contractsExpired += expired;
+        lastRunAt = now;
+        lastDue = due.getCount();
+        lastExpired = expired;
+        lastDurationMs = (System.nanoTime() - startedNanos) / 1_000_000;
+        // насколько самый старый контракт пережил свой срок
+        lastLagMs = due.getOldestEndAt() == null ? 0 : Duration.between(due.getOldestEndAt(), now).toMillis();
+        maxLagMs = Math.max(maxLagMs, lastLagMs);
+        lastError = null;
+    }
+
+    private synchronized void recordFailure(int due, long startedNanos, RuntimeException e) {
+        checks++;
+        failures++;
+        lastRunAt = LocalDateTime.now();
+        lastDue = due;
+        lastExpired = 0;
+        lastDurationMs = (System.nanoTime() - startedNanos) / 1_000_000;
+        lastError = e.getMessage();
+    }
+}
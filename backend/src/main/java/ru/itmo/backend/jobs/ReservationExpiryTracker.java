@@ -0,0 +1,219 @@
+package ru.itmo.backend.jobs;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.itmo.backend.dao.CleanupDao;
+import ru.itmo.backend.dao.ReservationDao;
+import ru.itmo.backend.dao.SaleListingDao;
+import ru.itmo.backend.dto.cart.ReservationExpiryStatsDto;
+import ru.itmo.backend.events.ReservationCreatedEvent;
+import ru.itmo.backend.events.SaleListingChangedEvent;
+import ru.itmo.backend.index.OrderBook;
+import ru.itmo.backend.model.enums.SaleListingStatus;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// сроки резервов корзины в DelayQueue: снимаем резерв ровно когда он истёк, а не раз в минуту.
+// ключ — листинг: у листинга одновременно не больше одного резерва (это держит триггер в БД)
+@Slf4j
+@Component
+public class ReservationExpiryTracker {
+
+    private static final long RETRY_DELAY_MS = 5000;
+
+    private final ReservationDao reservationDao;
+    private final CleanupDao cleanupDao;
+    private final SaleListingDao saleListingDao;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate tx;
+    private final long batchWindowMs;
+    private final int chunkSize;
+
+    private final DelayQueue<Deadline> queue = new DelayQueue<>();
+    private final Map<Integer, Deadline> tracked = new ConcurrentHashMap<>();
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    private final AtomicLong releases = new AtomicLong();
+    private final AtomicLong listingsReleased = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile long lastLagMs;
+    private volatile long maxLagMs;
+
+    public ReservationExpiryTracker(ReservationDao reservationDao,
+                                    CleanupDao cleanupDao,
+                                    SaleListingDao saleListingDao,
+                                    ApplicationEventPublisher eventPublisher,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${app.reservations.expiry.batchWindowMs:100}") long batchWindowMs,
+                                    @Value("${app.cleanup.chunkSize:500}") int chunkSize) {
+        this.reservationDao = reservationDao;
+        this.cleanupDao = cleanupDao;
+        this.saleListingDao = saleListingDao;
+        this.eventPublisher = eventPublisher;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.batchWindowMs = batchWindowMs;
+        this.chunkSize = chunkSize;
+        this.worker = new Thread(this::loop, "reservation-expiry");
+        this.worker.setDaemon(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        List<ReservationDao.Deadline> deadlines = reservationDao.findActiveDeadlines();
+        deadlines.forEach(this::schedule);
+        log.info("Reservation expiry tracker loaded {} reservations", deadlines.size());
+        worker.start();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReservationCreated(ReservationCreatedEvent event) {
+        // reserved_until выставляет триггер, поэтому берём его из БД уже после коммита
+        reservationDao.findDeadlines(List.of(event.getCartItemId())).forEach(this::schedule);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onListingChanged(SaleListingChangedEvent event) {
+        // листинг куплен, снят или вернулся в продажу — его срок больше не нужен, запись в очереди станет «протухшей»
+        if (event.getStatus() != SaleListingStatus.RESERVED) {
+            tracked.remove(event.getSaleListingId());
+        }
+    }
+
+    public void schedule(ReservationDao.Deadline d) {
+        schedule(toDeadline(d));
+    }
+
+    public ReservationExpiryStatsDto stats() {
+        Deadline next = queue.peek();
+        return ReservationExpiryStatsDto.builder()
+                .backlog(queue.size())
+                .tracked(tracked.size())
+                .nextDeadline(next == null ? null
+                        : LocalDateTime.ofInstant(Instant.ofEpochMilli(next.dueAt), ZoneId.systemDefault()))
+                .releases(releases.get())
+                .listingsReleased(listingsReleased.get())
+                .failures(failures.get())
+                .lastLagMs(lastLagMs)
+                .maxLagMs(maxLagMs)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private static Deadline toDeadline(ReservationDao.Deadline d) {
+        long dueAt = d.getReservedUntil().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return new Deadline(d.getCartItemId(), d.getSaleListingId(), dueAt);
+    }
+
+    private void schedule(Deadline d) {
+        tracked.put(d.saleListingId, d);
+        queue.add(d);
+    }
+
+    private void loop() {
+        while (running) {
+            try {
+                Deadline first = queue.take();
+                // короткое окно, чтобы соседние сроки ушли одним вызовом
+                if (batchWindowMs > 0) Thread.sleep(batchWindowMs);
+                List<Deadline> batch = new ArrayList<>();
+                batch.add(first);
+                queue.drainTo(batch);
+                release(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.warn("Reservation expiry loop failed", e);
+            }
+        }
+    }
+
+    private void release(List<Deadline> batch) {
+        List<Deadline> live = batch.stream()
+                .filter(d -> tracked.remove(d.saleListingId, d))
+                .toList();
+        if (live.isEmpty()) return;
+
+        long now = System.currentTimeMillis();
+        long lag = now - live.stream().mapToLong(d -> d.dueAt).min().orElse(now);
+        lastLagMs = lag;
+        maxLagMs = Math.max(maxLagMs, lag);
+
+        List<Integer> cartItemIds = live.stream().map(d -> d.cartItemId).toList();
+        try {
+            // снимаем только наступившие резервы, порциями; остальное добирает ExpiredCleanupWorker
+            for (int from = 0; from < cartItemIds.size(); from += chunkSize) {
+                List<Integer> chunk = cartItemIds.subList(from, Math.min(from + chunkSize, cartItemIds.size()));
+                tx.executeWithoutResult(status -> {
+                    List<Integer> listingIds = cleanupDao.releaseExpiredReservations(chunk, chunk.size());
+                    if (listingIds.isEmpty()) return;
+                    List<OrderBook.Order> released = saleListingDao.findActiveOrders(new HashSet<>(listingIds));
+                    for (OrderBook.Order o : released) {
+                        eventPublisher.publishEvent(new SaleListingChangedEvent(
+                                o.getSaleListingId(), o.getSkinId(), o.getPrice(), SaleListingStatus.ACTIVE));
+                    }
+                    listingsReleased.addAndGet(released.size());
+                });
+            }
+            releases.incrementAndGet();
+            // резерв могли продлить — ставим заново по новому сроку; не снятый в срок (часы БД отстают
+            // или строку держал другой узел) проверяем ещё раз чуть позже
+            long retryAt = System.currentTimeMillis() + RETRY_DELAY_MS;
+            reservationDao.findDeadlines(cartItemIds).forEach(d -> {
+                Deadline next = toDeadline(d);
+                schedule(next.dueAt > retryAt ? next : new Deadline(next.cartItemId, next.saleListingId, retryAt));
+            });
+        } catch (RuntimeException e) {
+            failures.incrementAndGet();
+            log.warn("Reservation release failed for {} listings, retrying in {} ms", live.size(), RETRY_DELAY_MS, e);
+            live.forEach(d -> schedule(new Deadline(d.cartItemId, d.saleListingId, now + RETRY_DELAY_MS)));
+        }
+    }
+
+    private static final class Deadline implements Delayed {
+        private final int cartItemId;
+        private final int saleListingId;
+        private final long dueAt;
+
+        Deadline(int cartItemId, int saleListingId, long dueAt) {
+            this.cartItemId = cartItemId;
+            this.saleListingId = saleListingId;
+            this.dueAt = dueAt;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(dueAt, ((Deadline) o).dueAt);
+        }
+    }
+}
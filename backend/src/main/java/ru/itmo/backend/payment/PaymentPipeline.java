@@ -0,0 +1,362 @@
+package ru.itmo.backend.payment;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.itmo.backend.dao.BalanceDao;
+import ru.itmo.backend.dao.PaymentDao;
+import ru.itmo.backend.dto.payment.PaymentPipelineStatsDto;
+import ru.itmo.backend.events.PaymentCreatedEvent;
+import ru.itmo.backend.model.enums.PaymentOperationType;
+import ru.itmo.backend.model.enums.PaymentStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// PENDING-операции: ограниченная очередь -> пул воркеров -> провайдер -> пачки результатов,
+// которые одним транзакционным проходом применяются к статусам и балансам.
+// в очередь попадают только операции, захваченные арендой в БД, поэтому узлы не списывают одну операцию дважды.
+// без настроенного провайдера пайплайн выключен: операции остаются PENDING до ручного PATCH
+@Slf4j
+@Component
+public class PaymentPipeline {
+
+    private final PaymentProvider provider;
+    private final PaymentDao paymentDao;
+    private final BalanceDao balanceDao;
+    private final TransactionTemplate tx;
+
+    private final int workers;
+    private final int maxAttempts;
+    private final long leaseMs;
+    private final int maxApplyAttempts;
+    private final long retryBaseMs;
+    private final long retryMaxMs;
+    private final int applyBatchSize;
+    private final long applyFlushMs;
+
+    private final BlockingQueue<Task> queue;
+    private final BlockingQueue<Completion> completions = new LinkedBlockingQueue<>();
+    // id операций, которые уже где-то в пайплайне: в очереди, у воркера, в ожидании ретрая или применения
+    private final Set<Integer> inPipeline = ConcurrentHashMap.newKeySet();
+    private final ExecutorService workerPool;
+    private final ScheduledExecutorService retryScheduler;
+    private final Thread applier;
+    private volatile boolean running = true;
+
+    private final long startedAt = System.nanoTime();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong approved = new AtomicLong();
+    private final AtomicLong declined = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong leaseExpired = new AtomicLong();
+    private final AtomicLong applyFailed = new AtomicLong();
+    private final AtomicLong appliedBatches = new AtomicLong();
+    private volatile int lastBatchSize;
+    private long sampleAt = System.nanoTime();
+    private long sampleDone;
+
+    public PaymentPipeline(Optional<PaymentProvider> provider,
+                           PaymentDao paymentDao,
+                           BalanceDao balanceDao,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${app.payments.pipeline.queueCapacity:10000}") int queueCapacity,
+                           @Value("${app.payments.pipeline.workers:16}") int workers,
+                           @Value("${app.payments.pipeline.maxAttempts:5}") int maxAttempts,
+                           @Value("${app.payments.pipeline.leaseMs:300000}") long leaseMs,
+                           @Value("${app.payments.pipeline.maxApplyAttempts:3}") int maxApplyAttempts,
+                           @Value("${app.payments.pipeline.retryBaseMs:200}") long retryBaseMs,
+                           @Value("${app.payments.pipeline.retryMaxMs:10000}") long retryMaxMs,
+                           @Value("${app.payments.pipeline.applyBatchSize:500}") int applyBatchSize,
+                           @Value("${app.payments.pipeline.applyFlushMs:50}") long applyFlushMs) {
+        this.provider = provider.orElse(null);
+        this.paymentDao = paymentDao;
+        this.balanceDao = balanceDao;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.workers = workers;
+        this.maxAttempts = maxAttempts;
+        this.leaseMs = leaseMs;
+        this.maxApplyAttempts = maxApplyAttempts;
+        this.retryBaseMs = retryBaseMs;
+        this.retryMaxMs = retryMaxMs;
+        this.applyBatchSize = applyBatchSize;
+        this.applyFlushMs = applyFlushMs;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        AtomicInteger n = new AtomicInteger();
+        this.workerPool = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "payment-worker-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "payment-retry");
+            t.setDaemon(true);
+            return t;
+        });
+        this.applier = new Thread(this::applyLoop, "payment-apply");
+        this.applier.setDaemon(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (provider == null) {
+            log.warn("No payment provider configured (app.payments.provider), pending operations stay PENDING");
+            return;
+        }
+        for (int i = 0; i < workers; i++) {
+            workerPool.submit(this::workLoop);
+        }
+        applier.start();
+        recoverPending();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPaymentCreated(PaymentCreatedEvent event) {
+        if (provider == null) return;
+        long leaseUntil = System.currentTimeMillis() + leaseMs;
+        List<PaymentRequest> claimed = paymentDao.claim(List.of(event.getRequest().getOperationId()), leaseMs);
+        List<Integer> notQueued = claimed.stream()
+                .filter(r -> !submit(r, leaseUntil))
+                .map(PaymentRequest::getOperationId)
+                .toList();
+        paymentDao.releaseLease(notQueued);
+    }
+
+    // leaseUntil — локальная оценка конца аренды, взятая до захвата, то есть не позже срока в БД
+    private boolean submit(PaymentRequest request, long leaseUntil) {
+        if (!inPipeline.add(request.getOperationId())) return true;
+        if (!queue.offer(new Task(request, 0, leaseUntil))) {
+            // очередь полна — операция остаётся PENDING, её подберёт recoverPending
+            inPipeline.remove(request.getOperationId());
+            rejected.incrementAndGet();
+            return false;
+        }
+        submitted.incrementAndGet();
+        return true;
+    }
+
+    // подбирает PENDING без живой аренды: не попавшие в очередь (переполнение, рестарт, упавший узел)
+    @Scheduled(fixedDelayString = "${app.payments.pipeline.recoveryMs:30000}")
+    public void recoverPending() {
+        if (provider == null) return;
+        while (queue.remainingCapacity() > 0) {
+            int limit = Math.min(queue.remainingCapacity(), 1000);
+            long leaseUntil = System.currentTimeMillis() + leaseMs;
+            List<PaymentRequest> claimed = paymentDao.claimPending(limit, leaseMs);
+            List<Integer> notQueued = claimed.stream()
+                    .filter(r -> !submit(r, leaseUntil))
+                    .map(PaymentRequest::getOperationId)
+                    .toList();
+            paymentDao.releaseLease(notQueued);
+            if (claimed.size() < limit || !notQueued.isEmpty()) return;
+        }
+    }
+
+    public synchronized PaymentPipelineStatsDto stats() {
+        long now = System.nanoTime();
+        long done = approved.get() + declined.get();
+        double recent = now == sampleAt ? 0 : (done - sampleDone) * 1e9 / (now - sampleAt);
+        sampleAt = now;
+        sampleDone = done;
+        return PaymentPipelineStatsDto.builder()
+                .enabled(provider != null)
+                .queued(queue.size())
+                .inFlight(inPipeline.size())
+                .pendingApply(completions.size())
+                .submitted(submitted.get())
+                .rejected(rejected.get())
+                .approved(approved.get())
+                .declined(declined.get())
+                .retries(retries.get())
+                .leaseExpired(leaseExpired.get())
+                .applyFailed(applyFailed.get())
+                .appliedBatches(appliedBatches.get())
+                .lastBatchSize(lastBatchSize)
+                .opsPerSecond(done * 1e9 / (now - startedAt))
+                .recentOpsPerSecond(recent)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        workerPool.shutdownNow();
+        retryScheduler.shutdownNow();
+        applier.interrupt();
+    }
+
+    private void workLoop() {
+        while (running) {
+            Task task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            // аренда истекла (долгие ретраи или очередь) — операцию мог захватить другой узел,
+            // поэтому провайдера не зовём; recoverPending захватит её заново
+            if (System.currentTimeMillis() >= task.leaseUntil) {
+                leaseExpired.incrementAndGet();
+                inPipeline.remove(task.request.getOperationId());
+                continue;
+            }
+
+            PaymentProvider.Outcome outcome;
+            try {
+                outcome = provider.process(task.request);
+            } catch (RuntimeException e) {
+                log.warn("Payment provider failed for operation {}", task.request.getOperationId(), e);
+                outcome = PaymentProvider.Outcome.RETRY;
+            }
+
+            switch (outcome) {
+                case APPROVED -> completions.add(new Completion(task.request, true, 0));
+                case DECLINED -> completions.add(new Completion(task.request, false, 0));
+                case RETRY -> retry(task);
+            }
+        }
+    }
+
+    private void retry(Task task) {
+        int attempt = task.attempt + 1;
+        if (attempt >= maxAttempts) {
+            completions.add(new Completion(task.request, false, 0));
+            return;
+        }
+        retries.incrementAndGet();
+        // экспоненциальная задержка с джиттером, чтобы ретраи не шли волной
+        long delay = Math.min(retryMaxMs, retryBaseMs << Math.min(attempt - 1, 20));
+        delay = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        retryScheduler.schedule(() -> {
+            if (!queue.offer(new Task(task.request, attempt, task.leaseUntil))) {
+                inPipeline.remove(task.request.getOperationId());
+                rejected.incrementAndGet();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void applyLoop() {
+        List<Completion> batch = new ArrayList<>(applyBatchSize);
+        while (running) {
+            try {
+                Completion first = completions.poll(applyFlushMs, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                completions.drainTo(batch, applyBatchSize - 1);
+                apply(batch);
+                batch.forEach(c -> inPipeline.remove(c.request.getOperationId()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // одна «ядовитая» строка не должна держать всю пачку: применяем по одной
+                log.warn("Applying {} payment results failed, applying one by one", batch.size(), e);
+                if (!applySeparately(batch)) {
+                    // не прошла ни одна — похоже на недоступность БД, не крутимся вхолостую
+                    try {
+                        Thread.sleep(1000);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // true — хотя бы одна операция применена или закрыта как FAILED
+    private boolean applySeparately(List<Completion> batch) {
+        boolean progress = false;
+        for (Completion c : batch) {
+            int id = c.request.getOperationId();
+            try {
+                apply(List.of(c));
+                inPipeline.remove(id);
+                progress = true;
+                continue;
+            } catch (RuntimeException e) {
+                if (c.applyFailures + 1 < maxApplyAttempts) {
+                    completions.add(new Completion(c.request, c.approved, c.applyFailures + 1));
+                    continue;
+                }
+                log.error("Payment operation {} failed to apply {} times, marking FAILED", id, maxApplyAttempts, e);
+            }
+            try {
+                tx.executeWithoutResult(status -> paymentDao.markFailed(List.of(id), PaymentStatus.PENDING));
+                inPipeline.remove(id);
+                declined.incrementAndGet();
+                applyFailed.incrementAndGet();
+                progress = true;
+            } catch (RuntimeException e) {
+                // не удалось даже пометить — оставляем в очереди применения
+                completions.add(c);
+            }
+        }
+        return progress;
+    }
+
+    private void apply(List<Completion> batch) {
+        List<Integer> approvedIds = new ArrayList<>();
+        List<Integer> declinedIds = new ArrayList<>();
+        for (Completion c : batch) {
+            (c.approved ? approvedIds : declinedIds).add(c.request.getOperationId());
+        }
+
+        Integer succeeded = tx.execute(status -> {
+            // SUCCESS получают только те, что всё ещё PENDING: ручной PATCH или другой узел могли успеть раньше
+            List<PaymentRequest> claimed = paymentDao.claimSuccess(approvedIds);
+            List<BalanceDao.Delta> deltas = claimed.stream()
+                    .map(r -> new BalanceDao.Delta(r.getUserId(),
+                            r.getType() == PaymentOperationType.WITHDRAW ? -r.getAmount() : r.getAmount(),
+                            r.getType().name(), r.getOperationId()))
+                    .toList();
+            int[] applied = balanceDao.applyDeltas(deltas);
+
+            List<Integer> insufficient = new ArrayList<>();
+            for (int i = 0; i < applied.length; i++) {
+                if (applied[i] == 0) insufficient.add(claimed.get(i).getOperationId());
+            }
+            paymentDao.markFailed(insufficient, PaymentStatus.SUCCESS);
+            paymentDao.markFailed(declinedIds, PaymentStatus.PENDING);
+            return claimed.size() - insufficient.size();
+        });
+
+        int ok = succeeded == null ? 0 : succeeded;
+        approved.addAndGet(ok);
+        declined.addAndGet(batch.size() - ok);
+        appliedBatches.incrementAndGet();
+        lastBatchSize = batch.size();
+    }
+
+    private record Task(PaymentRequest request, int attempt, long leaseUntil) {
+    }
+
+    private record Completion(PaymentRequest request, boolean approved, int applyFailures) {
+    }
+}
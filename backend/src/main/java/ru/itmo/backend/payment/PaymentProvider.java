@@ -0,0 +1,14 @@
+package ru.itmo.backend.payment;
+
+// внешний платёжный провайдер; вызывается из рабочих потоков PaymentPipeline
+public interface PaymentProvider {
+
+    enum Outcome {
+        APPROVED,
+        DECLINED,
+        // временная ошибка — пайплайн повторит с задержкой
+        RETRY
+    }
+
+    Outcome process(PaymentRequest request);
+}
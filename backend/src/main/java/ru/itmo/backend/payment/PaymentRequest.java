@@ -0,0 +1,14 @@
+package ru.itmo.backend.payment;
+
+import lombok.Value;
+import ru.itmo.backend.model.enums.PaymentMethod;
+import ru.itmo.backend.model.enums.PaymentOperationType;
+
+@Value
+public class PaymentRequest {
+    int operationId;
+    int userId;
+    PaymentOperationType type;
+    PaymentMethod method;
+    int amount;
+}
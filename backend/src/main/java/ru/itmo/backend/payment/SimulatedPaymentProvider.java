@@ -0,0 +1,43 @@
+package ru.itmo.backend.payment;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// локальная замена провайдера: задержка сети и доля отказов задаются в конфиге, чтобы мерить пропускную способность.
+// одобряет платежи случайно, поэтому включается только явно — профилем bench (application-bench.yml)
+@Component
+@ConditionalOnProperty(name = "app.payments.provider", havingValue = "simulated")
+public class SimulatedPaymentProvider implements PaymentProvider {
+
+    private final long latencyMs;
+    private final double transientFailureRate;
+    private final double declineRate;
+
+    public SimulatedPaymentProvider(@Value("${app.payments.simulated.latencyMs:20}") long latencyMs,
+                                    @Value("${app.payments.simulated.transientFailureRate:0.05}") double transientFailureRate,
+                                    @Value("${app.payments.simulated.declineRate:0.01}") double declineRate) {
+        this.latencyMs = latencyMs;
+        this.transientFailureRate = transientFailureRate;
+        this.declineRate = declineRate;
+    }
+
+    @Override
+    public Outcome process(PaymentRequest request) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (latencyMs > 0) {
+            try {
+                Thread.sleep(latencyMs / 2 + random.nextLong(latencyMs + 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Outcome.RETRY;
+            }
+        }
+        double roll = random.nextDouble();
+        if (roll < transientFailureRate) return Outcome.RETRY;
+        if (roll < transientFailureRate + declineRate) return Outcome.DECLINED;
+        return Outcome.APPROVED;
+    }
+}
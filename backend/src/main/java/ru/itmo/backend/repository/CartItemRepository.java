@@ -1,13 +1,16 @@
 package ru.itmo.backend.repository;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
-import ru.itmo.backend.model.Cart;
 import ru.itmo.backend.model.CartItem;
 
-import java.util.List;
 import java.util.Optional;
 
 public interface CartItemRepository extends JpaRepository<CartItem, Integer> {
-    List<CartItem> findByCartId(Integer cartId);
-    Optional<CartItem> findByCartIdAndSaleListingId(Integer cartId, Integer saleListingId);
+
+    @EntityGraph(attributePaths = {
+            "saleListing",
+            "saleListing.inventoryItem"
+    })
+    Optional<CartItem> findWithListingById(Integer id);
 }
@@ -1,6 +1,8 @@
 package ru.itmo.backend.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import ru.itmo.backend.model.Cart;
 import ru.itmo.backend.model.enums.CartStatus;
 
@@ -8,4 +10,16 @@ import java.util.Optional;
 
 public interface CartRepository extends JpaRepository<Cart, Integer> {
     Optional<Cart> findByUserIdAndStatus(Integer userId, CartStatus status);
+
+    // корзина вместе с позициями и всем, что нужно CartMapper, одним запросом;
+    // после изменения ответ собирается из этой же коллекции, без повторного чтения
+    @Query("""
+        select c from Cart c
+        left join fetch c.items i
+        left join fetch i.saleListing sl
+        left join fetch sl.inventoryItem ii
+        left join fetch ii.skin
+        where c.user.id = :userId and c.status = :status
+        """)
+    Optional<Cart> findWithItemsByUserIdAndStatus(@Param("userId") Integer userId, @Param("status") CartStatus status);
 }
@@ -1,5 +1,6 @@
 package ru.itmo.backend.repository;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -12,7 +13,11 @@ import java.util.Optional;
 
 public interface SaleListingRepository extends JpaRepository<SaleListing, Integer> {
     List<SaleListing> findByStatus(SaleListingStatus status);
+
+    // корзине нужен скин листинга для ответа и события, поэтому предмет и скин тянем тем же запросом
+    @EntityGraph(attributePaths = {"inventoryItem", "inventoryItem.skin"})
     Optional<SaleListing> findByIdAndStatus(Integer id, SaleListingStatus status);
+
     Optional<SaleListing> findFirstByInventoryItemIdAndStatus(Integer inventoryItemId, SaleListingStatus status);
 
     @Query("select s.inventoryItem.id from SaleListing s where s.inventoryItem.id in :ids and s.status in :statuses")
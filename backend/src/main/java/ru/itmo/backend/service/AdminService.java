@@ -1,10 +1,25 @@
 package ru.itmo.backend.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.itmo.backend.dao.BalanceDao;
+import ru.itmo.backend.dao.InstantPriceDao;
+import ru.itmo.backend.dto.payment.BalanceLedgerSummaryDto;
+import ru.itmo.backend.dto.rental.RentalExpiryStatsDto;
+import ru.itmo.backend.dto.CleanupRunStatsDto;
+import ru.itmo.backend.dto.cart.ReservationExpiryStatsDto;
+import ru.itmo.backend.jobs.ExpiredCleanupWorker;
+import ru.itmo.backend.jobs.RentalExpiryWorker;
+import ru.itmo.backend.jobs.ReservationExpiryTracker;
 import ru.itmo.backend.dto.instant.InstantBuyPriceDto;
+import ru.itmo.backend.dto.instant.InstantBuyPriceUpsertRequestDto;
+import ru.itmo.backend.dto.instant.InstantPriceBatchItemResultDto;
+import ru.itmo.backend.dto.instant.InstantPriceBatchResultDto;
 import ru.itmo.backend.dto.user.AdminUserDto;
+import ru.itmo.backend.events.InstantPriceChangedEvent;
+import ru.itmo.backend.events.SaleListingsResyncEvent;
 import ru.itmo.backend.exception.BadRequestException;
 import ru.itmo.backend.exception.NotFoundException;
 import ru.itmo.backend.exception.UnauthorizedException;
@@ -18,21 +33,36 @@ import ru.itmo.backend.repository.UserRepository;
 import ru.itmo.backend.dao.CleanupDao;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 public class AdminService {
 
+    private static final int MAX_INSTANT_PRICE_BATCH = 20000;
+
     private final CleanupDao cleanupDao;
     private final InstantBuyRepository instantBuyRepository;
     private final SkinRepository skinRepository;
     private final UserRepository userRepository;
     private final AuthService authService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final InstantPriceDao instantPriceDao;
+    private final ReservationExpiryTracker reservationExpiryTracker;
+    private final ExpiredCleanupWorker expiredCleanupWorker;
+    private final RentalExpiryWorker rentalExpiryWorker;
+    private final BalanceDao balanceDao;
 
 
     public int cleanupExpiredReservations() {
-        return cleanupDao.cleanupExpiredReservations();
+        int cleared = cleanupDao.cleanupExpiredReservations();
+        if (cleared > 0) {
+            eventPublisher.publishEvent(new SaleListingsResyncEvent("cleanup_expired_reservations", cleared));
+        }
+        return cleared;
     }
 
     @Transactional
@@ -60,13 +90,92 @@ public class AdminService {
 
         InstantBuyPrice saved = instantBuyRepository.save(entity);
 
-        return InstantBuyPriceDto.builder()
+        InstantBuyPriceDto dto = InstantBuyPriceDto.builder()
                 .id(saved.getId())
                 .price(saved.getPrice())
                 .updatedAt(saved.getUpdatedAt())
                 .skinId(skinId)
                 .userId(userId)
                 .build();
+        eventPublisher.publishEvent(new InstantPriceChangedEvent(List.of(dto)));
+        return dto;
+    }
+
+    @Transactional
+    public InstantPriceBatchResultDto upsertInstantBuyPrices(Integer userId, List<InstantBuyPriceUpsertRequestDto> rows) {
+        if (userId == null || userId <= 0) throw new BadRequestException("userId must be > 0");
+        if (rows == null || rows.isEmpty()) throw new BadRequestException("rows are required");
+        if (rows.size() > MAX_INSTANT_PRICE_BATCH) {
+            throw new BadRequestException("At most " + MAX_INSTANT_PRICE_BATCH + " rows per batch");
+        }
+
+        // все скины проверяются одним запросом; скин, встреченный в пачке дважды, — ошибка во всех его строках:
+        // какую из цен имел в виду автор, не угадываем
+        Set<Integer> requested = new HashSet<>();
+        Set<Integer> duplicated = new HashSet<>();
+        for (InstantBuyPriceUpsertRequestDto row : rows) {
+            if (row != null && row.getSkinId() != null && row.getSkinId() > 0 && !requested.add(row.getSkinId())) {
+                duplicated.add(row.getSkinId());
+            }
+        }
+        Set<Integer> existing = new HashSet<>(instantPriceDao.findExistingSkinIds(requested));
+
+        List<InstantPriceBatchItemResultDto> results = new ArrayList<>(rows.size());
+        List<int[]> valid = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            InstantBuyPriceUpsertRequestDto row = rows.get(i);
+            Integer skinId = row == null ? null : row.getSkinId();
+            Integer price = row == null ? null : row.getPrice();
+
+            String error = null;
+            if (skinId == null || skinId <= 0) error = "skinId must be > 0";
+            else if (price == null || price <= 0) error = "price must be > 0";
+            else if (duplicated.contains(skinId)) error = "Duplicate skinId in batch: " + skinId;
+            else if (!existing.contains(skinId)) error = "Skin not found: " + skinId;
+
+            if (error == null) valid.add(new int[]{skinId, price});
+            results.add(InstantPriceBatchItemResultDto.builder()
+                    .index(i)
+                    .skinId(skinId)
+                    .price(price)
+                    .success(error == null)
+                    .error(error)
+                    .build());
+        }
+
+        if (!valid.isEmpty()) {
+            instantPriceDao.upsertBatch(userId, valid, LocalDateTime.now());
+            Set<Integer> touched = new HashSet<>();
+            valid.forEach(row -> touched.add(row[0]));
+            eventPublisher.publishEvent(new InstantPriceChangedEvent(instantPriceDao.findLatest(touched)));
+        }
+
+        return InstantPriceBatchResultDto.builder()
+                .total(rows.size())
+                .succeeded(valid.size())
+                .failed(rows.size() - valid.size())
+                .results(results)
+                .build();
+    }
+
+    public ReservationExpiryStatsDto getReservationExpiryStats() {
+        return reservationExpiryTracker.stats();
+    }
+
+    @Transactional(readOnly = true)
+    public BalanceLedgerSummaryDto getBalanceLedger(Integer userId) {
+        if (userId == null || userId <= 0) throw new BadRequestException("userId must be > 0");
+        BalanceLedgerSummaryDto summary = balanceDao.summary(userId);
+        if (summary == null) throw new NotFoundException("User not found: " + userId);
+        return summary;
+    }
+
+    public List<CleanupRunStatsDto> getCleanupStats() {
+        return expiredCleanupWorker.stats();
+    }
+
+    public RentalExpiryStatsDto getRentalExpiryStats() {
+        return rentalExpiryWorker.stats();
     }
 
     @Transactional(readOnly = true)
@@ -1,18 +1,29 @@
 package ru.itmo.backend.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.itmo.backend.dao.CartCheckoutDao;
 import ru.itmo.backend.dao.PurchaseDao;
 import ru.itmo.backend.dto.cart.CartDto;
+import ru.itmo.backend.dto.cart.CheckoutAllResultDto;
+import ru.itmo.backend.dto.cart.CheckoutItemResultDto;
+import ru.itmo.backend.events.ReservationCreatedEvent;
+import ru.itmo.backend.events.SaleListingChangedEvent;
 import ru.itmo.backend.exception.BadRequestException;
 import ru.itmo.backend.exception.NotFoundException;
+import ru.itmo.backend.index.ListingAdmissionGate;
 import ru.itmo.backend.mapper.CartMapper;
 import ru.itmo.backend.model.Cart;
 import ru.itmo.backend.model.CartItem;
 import ru.itmo.backend.model.SaleListing;
+import ru.itmo.backend.model.User;
 import ru.itmo.backend.model.enums.CartItemStatus;
 import ru.itmo.backend.model.enums.CartStatus;
 import ru.itmo.backend.model.enums.SaleListingStatus;
@@ -22,6 +33,10 @@ import ru.itmo.backend.repository.SaleListingRepository;
 import ru.itmo.backend.repository.UserRepository;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
@@ -32,25 +47,50 @@ public class CartService {
     private final UserRepository userRepository;
     private final SaleListingRepository saleListingRepository;
     private final PurchaseDao purchaseDao;
+    private final CartCheckoutDao cartCheckoutDao;
+    private final PlatformTransactionManager transactionManager;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ListingAdmissionGate admissionGate;
+    private final IdempotencyService idempotencyService;
 
-    @Transactional
+    // без @Transactional: проигравшие в гонке за листинг отсекаются до того, как транзакция возьмёт соединение
     public CartDto addItem(Integer userId, Integer saleListingId) {
-        var user = userRepository.findById(userId)
-                .orElseThrow(() -> new NotFoundException("User not found"));
+        if (!admissionGate.tryAcquire(saleListingId)) {
+            throw new BadRequestException("Sale listing is already reserved");
+        }
+        try {
+            return new TransactionTemplate(transactionManager).execute(status -> doAddItem(userId, saleListingId));
+        } finally {
+            admissionGate.release(saleListingId);
+        }
+    }
+
+    private CartDto doAddItem(Integer userId, Integer saleListingId) {
+        Cart cart = cartRepository.findWithItemsByUserIdAndStatus(userId, CartStatus.ACTIVE).orElse(null);
+        // пользователь с корзиной заведомо существует; отдельно проверяем, только когда корзину придётся создать
+        User user = null;
+        if (cart == null) {
+            user = userRepository.findById(userId).orElseThrow(() -> new NotFoundException("User not found"));
+        }
 
         // кладём в корзину только если листинг ещё ACTIVE (триггер сам переведёт в RESERVED)
         var listing = saleListingRepository.findByIdAndStatus(saleListingId, SaleListingStatus.ACTIVE)
-                .orElseThrow(() -> new NotFoundException("Active sale listing not found"));
-
-        Cart cart = cartRepository.findByUserIdAndStatus(userId, CartStatus.ACTIVE)
-                .orElseGet(() -> cartRepository.save(Cart.builder()
-                        .user(user)
-                        .status(CartStatus.ACTIVE)
-                        .createdAt(LocalDateTime.now())
-                        .build()));
+                .orElseThrow(() -> {
+                    admissionGate.markUnavailable(saleListingId);
+                    return new NotFoundException("Active sale listing not found");
+                });
+
+        if (cart == null) {
+            cart = cartRepository.save(Cart.builder()
+                    .user(user)
+                    .status(CartStatus.ACTIVE)
+                    .createdAt(LocalDateTime.now())
+                    .build());
+        }
 
-        cartItemRepository.findByCartIdAndSaleListingId(cart.getId(), saleListingId)
-                .ifPresent(x -> { throw new BadRequestException("Item already in cart"); });
+        if (cart.getItems().stream().anyMatch(i -> i.getSaleListing().getId().equals(saleListingId))) {
+            throw new BadRequestException("Item already in cart");
+        }
 
         CartItem item = CartItem.builder()
                 .cart(cart)
@@ -64,48 +104,66 @@ public class CartService {
         } catch (DataIntegrityViolationException e) {
             String msg = e.getMostSpecificCause() != null ? e.getMostSpecificCause().getMessage() : null;
             if (msg != null && msg.toLowerCase().contains("already reserved")) {
+                admissionGate.markUnavailable(saleListingId);
                 throw new BadRequestException("Sale listing is already reserved");
             }
             throw e;
         }
+        cart.getItems().add(item);
+        publishStatus(listing, SaleListingStatus.RESERVED);
+        eventPublisher.publishEvent(new ReservationCreatedEvent(item.getId()));
 
-        var items = cartItemRepository.findByCartId(cart.getId());
-        return CartMapper.toDto(cart, items);
+        return CartMapper.toDto(cart, cart.getItems());
     }
 
     @Transactional(readOnly = true)
     public CartDto getCart(Integer userId) {
-        Cart cart = cartRepository.findByUserIdAndStatus(userId, CartStatus.ACTIVE)
+        Cart cart = cartRepository.findWithItemsByUserIdAndStatus(userId, CartStatus.ACTIVE)
                 .orElseThrow(() -> new NotFoundException("Active cart not found"));
-
-        var items = cartItemRepository.findByCartId(cart.getId());
-        return CartMapper.toDto(cart, items);
+        return CartMapper.toDto(cart, cart.getItems());
     }
 
     @Transactional
     public CartDto removeItem(Integer userId, Integer cartItemId) {
-        Cart cart = cartRepository.findByUserIdAndStatus(userId, CartStatus.ACTIVE)
+        Cart cart = cartRepository.findWithItemsByUserIdAndStatus(userId, CartStatus.ACTIVE)
                 .orElseThrow(() -> new NotFoundException("Active cart not found"));
 
-        CartItem item = cartItemRepository.findById(cartItemId)
-                .orElseThrow(() -> new NotFoundException("Cart item not found"));
+        CartItem item = cart.getItems().stream()
+                .filter(i -> i.getId().equals(cartItemId))
+                .findFirst()
+                .orElseThrow(() -> cartItemRepository.existsById(cartItemId)
+                        ? new BadRequestException("Cart item does not belong to this user")
+                        : new NotFoundException("Cart item not found"));
 
-        if (!item.getCart().getId().equals(cart.getId())) {
-            throw new BadRequestException("Cart item does not belong to this user");
-        }
+        // позиция держала резерв — листинг возвращается в продажу этим же изменением, статус не перечитываем
+        SaleListing listing = item.getSaleListing();
+        boolean released = item.getItemStatus() == CartItemStatus.RESERVED
+                && listing.getStatus() == SaleListingStatus.RESERVED;
 
+        cart.getItems().remove(item);
         cartItemRepository.delete(item);
+        if (released) {
+            listing.setStatus(SaleListingStatus.ACTIVE);
+            publishStatus(listing, SaleListingStatus.ACTIVE);
+        }
 
-        var items = cartItemRepository.findByCartId(cart.getId());
-        return CartMapper.toDto(cart, items);
+        return CartMapper.toDto(cart, cart.getItems());
     }
 
     @Transactional
-    public void checkoutItem(Integer userId, Integer cartItemId) {
+    public String checkoutItem(Integer userId, Integer cartItemId, String idempotencyKey) {
+        return idempotencyService.execute("checkout-item", idempotencyKey, userId + ":" + cartItemId, String.class,
+                () -> {
+                    doCheckoutItem(userId, cartItemId);
+                    return "OK";
+                });
+    }
+
+    private void doCheckoutItem(Integer userId, Integer cartItemId) {
         Cart cart = cartRepository.findByUserIdAndStatus(userId, CartStatus.ACTIVE)
                 .orElseThrow(() -> new NotFoundException("Active cart not found"));
 
-        CartItem item = cartItemRepository.findById(cartItemId)
+        CartItem item = cartItemRepository.findWithListingById(cartItemId)
                 .orElseThrow(() -> new NotFoundException("Cart item not found"));
 
         if (!item.getCart().getId().equals(cart.getId())) {
@@ -152,20 +210,140 @@ public class CartService {
 
             // 2) покупка прошла — удаляем купленную позицию из корзины
             cartItemRepository.deleteById(cartItemId);
+            publishStatus(listing, SaleListingStatus.SOLD);
 
         } catch (DataAccessException e) {
-            String msg = e.getRootCause() != null ? e.getRootCause().getMessage() : e.getMessage();
-            String low = msg != null ? msg.toLowerCase() : "";
+            String known = purchaseError(e);
+            if (known != null) throw new BadRequestException(known);
+            throw e;
+        }
+    }
 
-            if (low.contains("insufficient") || low.contains("not enough") || low.contains("недостат")) {
-                throw new BadRequestException("Недостаточно средств");
-            }
+    @Transactional
+    public CheckoutAllResultDto checkoutAll(Integer userId) {
+        Cart cart = cartRepository.findByUserIdAndStatus(userId, CartStatus.ACTIVE)
+                .orElseThrow(() -> new NotFoundException("Active cart not found"));
 
-            if (low.contains("already reserved") || low.contains("reserved")) {
-                throw new BadRequestException("Sale listing is already reserved");
+        List<CartCheckoutDao.Candidate> candidates = cartCheckoutDao.findCandidates(cart.getId());
+        LocalDateTime now = LocalDateTime.now();
+
+        Map<Integer, String> errors = new HashMap<>();
+        List<CartCheckoutDao.Candidate> valid = new ArrayList<>();
+        for (CartCheckoutDao.Candidate c : candidates) {
+            String error = checkoutError(c, userId, now);
+            if (error == null) valid.add(c);
+            else errors.put(c.getCartItemId(), error);
+        }
+
+        List<CartCheckoutDao.Candidate> purchased = purchaseAll(userId, valid, errors);
+
+        cartCheckoutDao.deleteItems(purchased.stream().map(CartCheckoutDao.Candidate::getCartItemId).toList());
+        long totalSpent = 0;
+        for (CartCheckoutDao.Candidate c : purchased) {
+            totalSpent += c.getPrice();
+            eventPublisher.publishEvent(new SaleListingChangedEvent(
+                    c.getSaleListingId(), c.getSkinId(), c.getPrice(), SaleListingStatus.SOLD));
+        }
+
+        List<CheckoutItemResultDto> results = candidates.stream()
+                .map(c -> CheckoutItemResultDto.builder()
+                        .cartItemId(c.getCartItemId())
+                        .saleListingId(c.getSaleListingId())
+                        .price(c.getPrice())
+                        .success(!errors.containsKey(c.getCartItemId()))
+                        .error(errors.get(c.getCartItemId()))
+                        .build())
+                .toList();
+
+        return CheckoutAllResultDto.builder()
+                .total(candidates.size())
+                .purchased(purchased.size())
+                .failed(candidates.size() - purchased.size())
+                .totalSpent(totalSpent)
+                .results(results)
+                .build();
+    }
+
+    // сначала все покупки одним батчем под savepoint; если кто-то упал — откатываемся к нему
+    // и проводим позиции по одной, каждую под своим savepoint, чтобы отделить неудачные
+    private List<CartCheckoutDao.Candidate> purchaseAll(Integer userId, List<CartCheckoutDao.Candidate> valid,
+                                                        Map<Integer, String> errors) {
+        if (valid.isEmpty()) return List.of();
+
+        TransactionTemplate nested = new TransactionTemplate(transactionManager);
+        nested.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED);
+
+        List<int[]> rows = valid.stream()
+                .map(c -> new int[]{c.getSellerId(), c.getInventoryItemId(), c.getPrice()})
+                .toList();
+        try {
+            nested.executeWithoutResult(status -> purchaseDao.executePurchases(userId, rows));
+            return valid;
+        } catch (DataAccessException e) {
+            // падаем в поштучный режим ниже
+        }
+
+        List<CartCheckoutDao.Candidate> purchased = new ArrayList<>();
+        for (CartCheckoutDao.Candidate c : valid) {
+            try {
+                nested.executeWithoutResult(status -> purchaseDao.executePurchase(
+                        userId, c.getSellerId(), c.getInventoryItemId(), c.getPrice()));
+                purchased.add(c);
+            } catch (DataAccessException e) {
+                String known = purchaseError(e);
+                errors.put(c.getCartItemId(), known != null ? known : "Purchase failed");
             }
+        }
+        return purchased;
+    }
 
-            throw e;
+    // те же правила, что и в checkoutItem
+    private static String checkoutError(CartCheckoutDao.Candidate c, Integer userId, LocalDateTime now) {
+        String itemStatus = c.getItemStatus();
+        if (!CartItemStatus.RESERVED.name().equals(itemStatus) && !CartItemStatus.ACTIVE.name().equals(itemStatus)) {
+            return "Cart item is not purchasable";
         }
+        if (c.getReservedUntil() != null && c.getReservedUntil().isBefore(now)) {
+            return "Reservation expired";
+        }
+
+        String listingStatus = c.getListingStatus();
+        if (SaleListingStatus.SOLD.name().equals(listingStatus) || SaleListingStatus.CANCELLED.name().equals(listingStatus)) {
+            return "Sale listing is not purchasable";
+        }
+        if (SaleListingStatus.RESERVED.name().equals(listingStatus)) {
+            if (!CartItemStatus.RESERVED.name().equals(itemStatus)) return "Sale listing is reserved";
+            if (c.getReservedUntil() == null) return "Reservation expired";
+        } else if (!SaleListingStatus.ACTIVE.name().equals(listingStatus)) {
+            return "Sale listing is not active";
+        }
+
+        if (c.getSellerId() == userId) {
+            return "Buyer cannot be seller";
+        }
+        return null;
+    }
+
+    private static String purchaseError(DataAccessException e) {
+        String msg = e.getRootCause() != null ? e.getRootCause().getMessage() : e.getMessage();
+        String low = msg != null ? msg.toLowerCase() : "";
+
+        if (low.contains("insufficient") || low.contains("not enough") || low.contains("недостат")) {
+            return "Недостаточно средств";
+        }
+
+        if (low.contains("already reserved") || low.contains("reserved")) {
+            return "Sale listing is already reserved";
+        }
+
+        return null;
+    }
+
+    private void publishStatus(SaleListing listing, SaleListingStatus status) {
+        eventPublisher.publishEvent(new SaleListingChangedEvent(
+                listing.getId(),
+                listing.getInventoryItem().getSkin().getId(),
+                listing.getPrice(),
+                status));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,127 @@
+package ru.itmo.backend.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.itmo.backend.dao.IdempotencyDao;
+import ru.itmo.backend.exception.BadRequestException;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// повтор запроса с тем же Idempotency-Key возвращает сохранённый ответ, не выполняя операцию заново.
+// ключ, операция и ответ пишутся в одной транзакции: откат операции освобождает ключ
+@Slf4j
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    private static final int MAX_KEY_LENGTH = 128;
+
+    private final IdempotencyDao idempotencyDao;
+    private final JsonMapper jsonMapper;
+    private final long ttlMinutes;
+    private final Map<String, Cached> recent;
+
+    public IdempotencyService(IdempotencyDao idempotencyDao,
+                              JsonMapper jsonMapper,
+                              @Value("${app.idempotency.ttlMinutes:1440}") long ttlMinutes,
+                              @Value("${app.idempotency.cacheSize:10000}") int cacheSize) {
+        this.idempotencyDao = idempotencyDao;
+        this.jsonMapper = jsonMapper;
+        this.ttlMinutes = ttlMinutes;
+        this.recent = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    // вызывается внутри транзакции самой операции; request — то, что делает запрос уникальным (без ключа)
+    public <T> T execute(String scope, String key, String request, Class<T> type, Supplier<T> action) {
+        if (key == null) return action.get();
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException(HEADER + " must be 1.." + MAX_KEY_LENGTH + " characters");
+        }
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Idempotent operation must run inside a transaction");
+        }
+
+        String cacheKey = scope + ':' + key;
+        String requestHash = sha256(request);
+        LocalDateTime now = LocalDateTime.now();
+
+        Cached cached = recent.get(cacheKey);
+        if (cached != null && cached.expiresAt.isAfter(now)) {
+            requireSameRequest(cached.requestHash, requestHash);
+            return jsonMapper.readValue(cached.response, type);
+        }
+
+        LocalDateTime expiresAt = now.plusMinutes(ttlMinutes);
+        if (!idempotencyDao.claim(scope, key, requestHash, expiresAt)) {
+            IdempotencyDao.Stored stored = idempotencyDao.find(scope, key)
+                    .orElseThrow(() -> new BadRequestException("Request with this " + HEADER + " is in progress"));
+            requireSameRequest(stored.getRequestHash(), requestHash);
+            if (stored.getResponse() == null) {
+                throw new BadRequestException("Request with this " + HEADER + " is in progress");
+            }
+            recent.put(cacheKey, new Cached(stored.getRequestHash(), stored.getResponse(), stored.getExpiresAt()));
+            return jsonMapper.readValue(stored.getResponse(), type);
+        }
+
+        T result = action.get();
+        String response = jsonMapper.writeValueAsString(result);
+        idempotencyDao.saveResponse(scope, key, response);
+
+        // в LRU только после коммита: при откате ключ должен снова стать свободным
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recent.put(cacheKey, new Cached(requestHash, response, expiresAt));
+            }
+        });
+        return result;
+    }
+
+    @Scheduled(fixedDelayString = "${app.idempotency.purgeMs:3600000}")
+    public void purgeExpired() {
+        int purged = idempotencyDao.purgeExpired();
+        if (purged > 0) {
+            log.info("Purged {} expired idempotency keys", purged);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        synchronized (recent) {
+            recent.values().removeIf(c -> !c.expiresAt.isAfter(now));
+        }
+    }
+
+    private static void requireSameRequest(String expectedHash, String actualHash) {
+        if (!expectedHash.equals(actualHash)) {
+            throw new BadRequestException(HEADER + " was already used for a different request");
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Cached(String requestHash, String response, LocalDateTime expiresAt) {
+    }
+}
@@ -1,17 +1,34 @@
 package ru.itmo.backend.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.itmo.backend.dao.InstantPriceDao;
+import ru.itmo.backend.dao.SaleListingDao;
+import ru.itmo.backend.dto.market.BestAskDto;
 import ru.itmo.backend.dto.market.CreateSaleListingRequestDto;
+import ru.itmo.backend.dto.market.CreateSaleListingsBatchRequestDto;
+import ru.itmo.backend.dto.market.OrderBookDto;
+import ru.itmo.backend.dto.market.SaleListingBatchItemResultDto;
+import ru.itmo.backend.dto.market.SaleListingBatchResultDto;
 import ru.itmo.backend.dto.market.SaleListingCreatedDto;
+import ru.itmo.backend.dto.market.SaleListingFilter;
+import ru.itmo.backend.dto.market.SaleListingPageDto;
 import ru.itmo.backend.dto.market.SaleListingPreviewDto;
+import ru.itmo.backend.dto.market.SaleListingsBatchCancelRequestDto;
+import ru.itmo.backend.dto.market.SaleListingsBatchRepriceRequestDto;
+import ru.itmo.backend.dto.market.SkinFacetsDto;
 import ru.itmo.backend.dto.market.SkinPreviewDto;
+import ru.itmo.backend.events.SaleListingChangedEvent;
 import ru.itmo.backend.exception.BadRequestException;
 import ru.itmo.backend.exception.NotFoundException;
-import ru.itmo.backend.mapper.SaleListingMapper;
+import ru.itmo.backend.index.InstantPriceCache;
+import ru.itmo.backend.index.MarketVersion;
+import ru.itmo.backend.index.OrderBook;
+import ru.itmo.backend.index.SkinSearchIndex;
 import ru.itmo.backend.mapper.SkinMapper;
 import ru.itmo.backend.model.InventoryItem;
 import ru.itmo.backend.model.SaleListing;
@@ -23,7 +40,13 @@ import ru.itmo.backend.repository.SkinRepository;
 import ru.itmo.backend.dto.instant.InstantBuyPriceDto;
 import ru.itmo.backend.repository.InstantBuyRepository;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 import static ru.itmo.backend.repository.spec.SkinSpecifications.*;
 
@@ -31,17 +54,78 @@ import static ru.itmo.backend.repository.spec.SkinSpecifications.*;
 @Service
 @RequiredArgsConstructor
 public class MarketService {
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int DEFAULT_BOOK_DEPTH = 10;
+    private static final int MAX_BOOK_DEPTH = 100;
+    private static final int DEFAULT_SKIN_LIMIT = 100;
+    private static final int MAX_SKIN_LIMIT = 1000;
+    private static final int MAX_BULK_SKIN_IDS = 500;
+    private static final int MAX_BATCH_SIZE = 1000;
+
     private final SkinRepository skinRepository;
     private final SaleListingRepository saleListingRepository;
     private final InventoryItemRepository inventoryItemRepository;
     private final InstantBuyRepository instantBuyRepository;
+    private final SaleListingDao saleListingDao;
+    private final OrderBook orderBook;
+    private final SkinSearchIndex skinSearchIndex;
+    private final MarketVersion marketVersion;
+    private final InstantPriceCache instantPriceCache;
+    private final InstantPriceDao instantPriceDao;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // ETag для чтений витрины и каталога; брать до чтения данных, чтобы не пометить старые данные новой версией
+    public String getMarketEtag() {
+        return marketVersion.etag();
+    }
 
     @Transactional(readOnly = true)
     public List<SaleListingPreviewDto> getActiveSaleListings() {
-        return saleListingRepository.findByStatus(SaleListingStatus.ACTIVE)
-                .stream()
-                .map(SaleListingMapper::toPreviewDto)
-                .toList();
+        return saleListingDao.findActivePreviews();
+    }
+
+    @Transactional(readOnly = true)
+    public SaleListingPageDto getActiveSaleListingsPage(SaleListingFilter filter, String sort, String dir,
+                                                        String cursor, Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+            throw new BadRequestException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (filter.getSkinId() != null && filter.getSkinId() <= 0) {
+            throw new BadRequestException("skinId must be positive");
+        }
+        if (filter.getMinPrice() != null && filter.getMaxPrice() != null
+                && filter.getMinPrice() > filter.getMaxPrice()) {
+            throw new BadRequestException("minPrice must not exceed maxPrice");
+        }
+
+        SaleListingDao.Sort sortBy = switch (sort == null ? "id" : sort.trim().toLowerCase()) {
+            case "id" -> SaleListingDao.Sort.ID;
+            case "price" -> SaleListingDao.Sort.PRICE;
+            case "createdat", "created_at" -> SaleListingDao.Sort.CREATED_AT;
+            default -> throw new BadRequestException("Invalid sort: " + sort);
+        };
+
+        boolean desc;
+        if (dir == null || dir.equalsIgnoreCase("asc")) {
+            desc = false;
+        } else if (dir.equalsIgnoreCase("desc")) {
+            desc = true;
+        } else {
+            throw new BadRequestException("Invalid dir: " + dir);
+        }
+
+        SaleListingFilter normalized = SaleListingFilter.builder()
+                .skinId(filter.getSkinId())
+                .rarity(blankToNull(filter.getRarity()))
+                .collection(blankToNull(filter.getCollection()))
+                .condition(blankToNull(filter.getCondition()))
+                .minPrice(filter.getMinPrice())
+                .maxPrice(filter.getMaxPrice())
+                .build();
+
+        return saleListingDao.findActivePage(normalized, sortBy, desc, blankToNull(cursor), pageSize);
     }
 
     @Transactional(readOnly = true)
@@ -52,9 +136,7 @@ public class MarketService {
         if (ownerId <= 0) {
             throw new BadRequestException("ownerId must be positive");
         }
-        return saleListingRepository.findByInventoryItem_User_Id(ownerId).stream()
-                .map(SaleListingMapper::toPreviewDto)
-                .toList();
+        return saleListingDao.findPreviewsByOwner(ownerId);
     }
 
     @Transactional
@@ -77,6 +159,8 @@ public class MarketService {
                     .build();
 
             SaleListing saved = saleListingRepository.save(listing);
+            eventPublisher.publishEvent(new SaleListingChangedEvent(
+                    saved.getId(), item.getSkin().getId(), saved.getPrice(), SaleListingStatus.ACTIVE));
 
             return SaleListingCreatedDto.builder()
                     .id(saved.getId())
@@ -90,7 +174,17 @@ public class MarketService {
     }
 
     @Transactional(readOnly = true)
-    public List<SkinPreviewDto> getSkins(String q, String collection, String rarity, String condition) {
+    public List<SkinPreviewDto> getSkins(String q, String collection, String rarity, String condition, Integer limit) {
+        int max = limit == null ? DEFAULT_SKIN_LIMIT : limit;
+        if (max <= 0 || max > MAX_SKIN_LIMIT) {
+            throw new BadRequestException("limit must be between 1 and " + MAX_SKIN_LIMIT);
+        }
+
+        if (skinSearchIndex.isReady()) {
+            return skinSearchIndex.search(q, blankToNull(collection), blankToNull(rarity), blankToNull(condition), max);
+        }
+
+        // индекс ещё не построен (старт приложения) — идём в БД
         Specification<Skin> spec = (root, query, cb) -> cb.conjunction();
 
         Specification<Skin> s1 = nameContains(q);
@@ -106,10 +200,17 @@ public class MarketService {
         if (s4 != null) spec = spec.and(s4);
 
         return skinRepository.findAll(spec).stream()
+                .limit(max)
                 .map(SkinMapper::toPreviewDto)
                 .toList();
     }
 
+    public SkinFacetsDto getSkinFacets(String q, String collection, String rarity, String condition,
+                                       boolean withListings) {
+        return skinSearchIndex.facets(q, blankToNull(collection), blankToNull(rarity), blankToNull(condition),
+                withListings ? orderBook::size : null);
+    }
+
     @Transactional
     public void instantSell(Integer sellerId, Integer saleListingId) {
         SaleListing listing = saleListingRepository.findById(saleListingId)
@@ -126,36 +227,188 @@ public class MarketService {
 
         listing.setStatus(SaleListingStatus.INSTANT_SALE);
         saleListingRepository.save(listing);
+        publishStatus(listing);
     }
 
-    @Transactional(readOnly = true)
     public InstantBuyPriceDto getInstantPriceDto(Integer skinId) {
         if (skinId == null || skinId <= 0) {
             throw new BadRequestException("skinId must be positive");
         }
 
-        var p = instantBuyRepository.findTopBySkin_IdOrderByUpdatedAtDesc(skinId)
-                .orElseThrow(() -> new NotFoundException("Instant price not set for this skin"));
+        InstantBuyPriceDto dto;
+        if (instantPriceCache.isLoaded()) {
+            dto = instantPriceCache.get(skinId)
+                    .orElseThrow(() -> new NotFoundException("Instant price not set for this skin"));
+        } else {
+            var p = instantBuyRepository.findTopBySkin_IdOrderByUpdatedAtDesc(skinId)
+                    .orElseThrow(() -> new NotFoundException("Instant price not set for this skin"));
+            dto = InstantBuyPriceDto.builder()
+                    .id(p.getId())
+                    .price(p.getPrice())
+                    .updatedAt(p.getUpdatedAt())
+                    .skinId(p.getSkin() != null ? p.getSkin().getId() : null)
+                    .userId(p.getUpdatedBy() != null ? p.getUpdatedBy().getId() : null)
+                    .build();
+        }
 
-        Integer price = p.getPrice();
+        Integer price = dto.getPrice();
         if (price == null || price <= 0) {
             throw new NotFoundException("Instant price not set for this skin");
         }
-
-        return InstantBuyPriceDto.builder()
-                .id(p.getId())
-                .price(price)
-                .updatedAt(p.getUpdatedAt())
-                .skinId(p.getSkin() != null ? p.getSkin().getId() : null)
-                .userId(p.getUpdatedBy() != null ? p.getUpdatedBy().getId() : null)
-                .build();
+        return dto;
     }
 
-    @Transactional(readOnly = true)
     public Integer getInstantPrice(Integer skinId) {
         return getInstantPriceDto(skinId).getPrice();
     }
 
+    public List<InstantBuyPriceDto> getInstantPrices(List<Integer> skinIds) {
+        if (skinIds == null || skinIds.isEmpty()) {
+            throw new BadRequestException("skinIds is required");
+        }
+        if (skinIds.size() > MAX_BULK_SKIN_IDS) {
+            throw new BadRequestException("At most " + MAX_BULK_SKIN_IDS + " skinIds per request");
+        }
+        if (skinIds.stream().anyMatch(id -> id == null || id <= 0)) {
+            throw new BadRequestException("skinIds must be positive");
+        }
+
+        List<Integer> distinct = skinIds.stream().distinct().toList();
+        List<InstantBuyPriceDto> found = instantPriceCache.isLoaded()
+                ? distinct.stream().map(id -> instantPriceCache.get(id).orElse(null)).filter(Objects::nonNull).toList()
+                : instantPriceDao.findLatest(distinct);
+
+        return found.stream()
+                .filter(p -> p.getPrice() != null && p.getPrice() > 0)
+                .toList();
+    }
+
+    @Transactional
+    public SaleListingBatchResultDto createSaleListings(CreateSaleListingsBatchRequestDto req) {
+        List<CreateSaleListingsBatchRequestDto.Item> items = req.getItems();
+        if (items.size() > MAX_BATCH_SIZE) {
+            throw new BadRequestException("At most " + MAX_BATCH_SIZE + " items per batch");
+        }
+
+        List<Integer> itemIds = items.stream().map(CreateSaleListingsBatchRequestDto.Item::getInventoryItemId).distinct().toList();
+        // владение и занятость проверяются двумя запросами на весь пакет
+        Map<Integer, Integer> owned = saleListingDao.findOwnedItemSkins(req.getSellerId(), itemIds);
+        Set<Integer> busy = new HashSet<>(saleListingRepository.findBusyInventoryItemsIds(
+                itemIds, List.of(SaleListingStatus.ACTIVE, SaleListingStatus.RESERVED)));
+
+        String[] errors = new String[items.size()];
+        Set<Integer> seen = new HashSet<>();
+        List<int[]> rows = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            Integer itemId = items.get(i).getInventoryItemId();
+            if (!seen.add(itemId)) errors[i] = "Duplicate inventory item in batch";
+            else if (!owned.containsKey(itemId)) errors[i] = "Inventory item does not belong to seller";
+            else if (busy.contains(itemId)) errors[i] = "Sale listing already exists for this inventory item";
+            else rows.add(new int[]{itemId, items.get(i).getPrice()});
+        }
+
+        Map<Integer, Integer> created = new HashMap<>();
+        for (int[] row : saleListingDao.insertActive(rows)) {
+            created.put(row[1], row[0]);
+            eventPublisher.publishEvent(new SaleListingChangedEvent(
+                    row[0], owned.get(row[1]), row[2], SaleListingStatus.ACTIVE));
+        }
+
+        List<SaleListingBatchItemResultDto> results = new ArrayList<>(items.size());
+        int succeeded = 0;
+        for (int i = 0; i < items.size(); i++) {
+            CreateSaleListingsBatchRequestDto.Item item = items.get(i);
+            String error = errors[i];
+            Integer saleListingId = null;
+            if (error == null) {
+                saleListingId = created.get(item.getInventoryItemId());
+                // строку отбросил ON CONFLICT: листинг успели создать параллельно
+                if (saleListingId == null) error = "Sale listing already exists for this inventory item";
+            }
+            if (error == null) succeeded++;
+            results.add(SaleListingBatchItemResultDto.builder()
+                    .index(i)
+                    .inventoryItemId(item.getInventoryItemId())
+                    .saleListingId(saleListingId)
+                    .price(item.getPrice())
+                    .success(error == null)
+                    .error(error)
+                    .build());
+        }
+
+        return SaleListingBatchResultDto.builder()
+                .total(items.size())
+                .succeeded(succeeded)
+                .failed(items.size() - succeeded)
+                .results(results)
+                .build();
+    }
+
+    @Transactional
+    public SaleListingBatchResultDto cancelSaleListings(SaleListingsBatchCancelRequestDto req) {
+        List<Integer> ids = req.getSaleListingIds();
+        if (ids.size() > MAX_BATCH_SIZE) {
+            throw new BadRequestException("At most " + MAX_BATCH_SIZE + " items per batch");
+        }
+
+        // повторный id в пакете — ошибка клиента: такие строки отклоняются все, в БД не уходят
+        Set<Integer> duplicated = duplicates(ids);
+        Set<Integer> toCancel = new HashSet<>(ids);
+        toCancel.removeAll(duplicated);
+
+        Map<Integer, SaleListingDao.Updated> cancelled = new HashMap<>();
+        for (SaleListingDao.Updated u : saleListingDao.cancelActive(req.getSellerId(), toCancel)) {
+            cancelled.put(u.getSaleListingId(), u);
+            eventPublisher.publishEvent(new SaleListingChangedEvent(
+                    u.getSaleListingId(), u.getSkinId(), u.getPrice(), SaleListingStatus.CANCELLED));
+        }
+
+        List<SaleListingBatchItemResultDto> results = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            if (duplicated.contains(ids.get(i))) {
+                results.add(duplicateResult(i, ids.get(i), null));
+                continue;
+            }
+            results.add(batchItemResult(i, ids.get(i), cancelled.get(ids.get(i)), null));
+        }
+        return batchResult(results);
+    }
+
+    @Transactional
+    public SaleListingBatchResultDto repriceSaleListings(SaleListingsBatchRepriceRequestDto req) {
+        List<SaleListingsBatchRepriceRequestDto.Item> items = req.getItems();
+        if (items.size() > MAX_BATCH_SIZE) {
+            throw new BadRequestException("At most " + MAX_BATCH_SIZE + " items per batch");
+        }
+
+        // при повторном id в пакете неясно, какую цену ставить, поэтому отклоняются все такие строки
+        Set<Integer> duplicated = duplicates(items.stream()
+                .map(SaleListingsBatchRepriceRequestDto.Item::getSaleListingId).toList());
+        List<int[]> rows = new ArrayList<>(items.size());
+        for (SaleListingsBatchRepriceRequestDto.Item item : items) {
+            if (!duplicated.contains(item.getSaleListingId())) rows.add(new int[]{item.getSaleListingId(), item.getPrice()});
+        }
+
+        Map<Integer, SaleListingDao.Updated> repriced = new HashMap<>();
+        for (SaleListingDao.Updated u : saleListingDao.repriceActive(req.getSellerId(), rows)) {
+            repriced.put(u.getSaleListingId(), u);
+            // листинг остаётся ACTIVE, стакан перекладывает его на новый уровень цены
+            eventPublisher.publishEvent(new SaleListingChangedEvent(
+                    u.getSaleListingId(), u.getSkinId(), u.getPrice(), SaleListingStatus.ACTIVE));
+        }
+
+        List<SaleListingBatchItemResultDto> results = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            SaleListingsBatchRepriceRequestDto.Item item = items.get(i);
+            if (duplicated.contains(item.getSaleListingId())) {
+                results.add(duplicateResult(i, item.getSaleListingId(), item.getPrice()));
+                continue;
+            }
+            results.add(batchItemResult(i, item.getSaleListingId(), repriced.get(item.getSaleListingId()), item.getPrice()));
+        }
+        return batchResult(results);
+    }
+
     @Transactional
     public void cancelSaleListing(Integer sellerId, Integer saleListingId) {
         SaleListing listing = saleListingRepository.findById(saleListingId)
@@ -172,5 +425,86 @@ public class MarketService {
 
         listing.setStatus(SaleListingStatus.CANCELLED);
         saleListingRepository.save(listing);
+        publishStatus(listing);
+    }
+
+    public OrderBookDto getOrderBook(Integer skinId, Integer depth) {
+        if (skinId == null || skinId <= 0) {
+            throw new BadRequestException("skinId must be positive");
+        }
+        int levels = depth == null ? DEFAULT_BOOK_DEPTH : depth;
+        if (levels <= 0 || levels > MAX_BOOK_DEPTH) {
+            throw new BadRequestException("depth must be between 1 and " + MAX_BOOK_DEPTH);
+        }
+        return orderBook.depth(skinId, levels);
+    }
+
+    public BestAskDto getBestAsk(Integer skinId) {
+        if (skinId == null || skinId <= 0) {
+            throw new BadRequestException("skinId must be positive");
+        }
+        return orderBook.bestAsk(skinId)
+                .orElseThrow(() -> new NotFoundException("No active sale listings for this skin"));
+    }
+
+    private static SaleListingBatchItemResultDto batchItemResult(int index, Integer saleListingId,
+                                                                 SaleListingDao.Updated updated, Integer price) {
+        if (updated == null) {
+            return SaleListingBatchItemResultDto.builder()
+                    .index(index)
+                    .saleListingId(saleListingId)
+                    .price(price)
+                    .success(false)
+                    .error("Sale listing not found, not active or does not belong to seller")
+                    .build();
+        }
+        return SaleListingBatchItemResultDto.builder()
+                .index(index)
+                .saleListingId(updated.getSaleListingId())
+                .inventoryItemId(updated.getInventoryItemId())
+                .price(updated.getPrice())
+                .success(true)
+                .build();
+    }
+
+    private static Set<Integer> duplicates(List<Integer> ids) {
+        Set<Integer> seen = new HashSet<>();
+        Set<Integer> duplicated = new HashSet<>();
+        for (Integer id : ids) {
+            if (!seen.add(id)) duplicated.add(id);
+        }
+        return duplicated;
+    }
+
+    private static SaleListingBatchItemResultDto duplicateResult(int index, Integer saleListingId, Integer price) {
+        return SaleListingBatchItemResultDto.builder()
+                .index(index)
+                .saleListingId(saleListingId)
+                .price(price)
+                .success(false)
+                .error("Duplicate saleListingId in batch: " + saleListingId)
+                .build();
+    }
+
+    private static SaleListingBatchResultDto batchResult(List<SaleListingBatchItemResultDto> results) {
+        int succeeded = (int) results.stream().filter(SaleListingBatchItemResultDto::isSuccess).count();
+        return SaleListingBatchResultDto.builder()
+                .total(results.size())
+                .succeeded(succeeded)
+                .failed(results.size() - succeeded)
+                .results(results)
+                .build();
+    }
+
+    private void publishStatus(SaleListing listing) {
+        eventPublisher.publishEvent(new SaleListingChangedEvent(
+                listing.getId(),
+                listing.getInventoryItem().getSkin().getId(),
+                listing.getPrice(),
+                listing.getStatus()));
+    }
+
+    private static String blankToNull(String s) {
+        return s == null || s.isBlank() ? null : s.trim();
     }
 }
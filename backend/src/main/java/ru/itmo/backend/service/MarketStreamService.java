@@ -0,0 +1,212 @@
+package ru.itmo.backend.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.itmo.backend.dto.market.ListingChangeDto;
+import ru.itmo.backend.events.SaleListingChangedEvent;
+import ru.itmo.backend.events.SaleListingsResyncEvent;
+import ru.itmo.backend.exception.BadRequestException;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// один издатель на процесс: события листингов после коммита раскладываются по ограниченным очередям подписчиков.
+// медленный клиент не должен занимать общий пул отправки: переполнил буфер или завис в send дольше
+// sendTimeoutMs — отключаем, он переподключится и заново загрузит снапшот
+@Slf4j
+@Service
+public class MarketStreamService {
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService sender;
+    private final int bufferSize;
+    private final long timeoutMs;
+    private final long sendTimeoutNanos;
+
+    public MarketStreamService(@Value("${app.market.stream.bufferSize:256}") int bufferSize,
+                               @Value("${app.market.stream.timeoutMs:1800000}") long timeoutMs,
+                               @Value("${app.market.stream.senderThreads:4}") int senderThreads,
+                               @Value("${app.market.stream.sendTimeoutMs:5000}") long sendTimeoutMs) {
+        this.bufferSize = bufferSize;
+        this.timeoutMs = timeoutMs;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        AtomicInteger n = new AtomicInteger();
+        this.sender = Executors.newFixedThreadPool(senderThreads, r -> {
+            Thread t = new Thread(r, "market-stream-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public SseEmitter subscribe(Integer skinId) {
+        if (skinId != null && skinId <= 0) {
+            throw new BadRequestException("skinId must be positive");
+        }
+
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber sub = new Subscriber(emitter, skinId, bufferSize);
+        subscribers.add(sub);
+
+        emitter.onCompletion(() -> subscribers.remove(sub));
+        emitter.onTimeout(() -> subscribers.remove(sub));
+        emitter.onError(e -> subscribers.remove(sub));
+
+        // клиент сначала загружает снапшот, дальше применяет дельты
+        sub.offer(SseEmitter.event().name("hello").data(Map.of("skinId", skinId == null ? "all" : skinId)));
+        return emitter;
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onListingChanged(SaleListingChangedEvent event) {
+        if (subscribers.isEmpty()) return;
+
+        ListingChangeDto dto = ListingChangeDto.builder()
+                .id(event.getSaleListingId())
+                .skinId(event.getSkinId())
+                .price(event.getPrice())
+                .status(event.getStatus().name())
+                .build();
+
+        for (Subscriber sub : subscribers) {
+            if (sub.skinId == null || sub.skinId.equals(event.getSkinId())) {
+                sub.offer(SseEmitter.event().name("listing").data(dto));
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onResync(SaleListingsResyncEvent event) {
+        for (Subscriber sub : subscribers) {
+            sub.offer(SseEmitter.event().name("resync").data(Map.of("reason", event.getReason())));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.market.stream.heartbeatMs:15000}")
+    public void heartbeat() {
+        for (Subscriber sub : subscribers) {
+            sub.offer(SseEmitter.event().comment("ping"));
+        }
+    }
+
+    // зависшую отправку прерываем; сам эмиттер закрывает поток отправки, чтобы не ждать его блокировку здесь
+    @Scheduled(fixedDelayString = "${app.market.stream.watchdogMs:1000}")
+    public void watchdog() {
+        long now = System.nanoTime();
+        for (Subscriber sub : subscribers) {
+            long started = sub.sendStartedAt;
+            if (started != 0 && now - started > sendTimeoutNanos) {
+                log.debug("Market stream client is too slow, disconnecting");
+                sub.close();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.forEach(sub -> sub.emitter.complete());
+        subscribers.clear();
+        sender.shutdownNow();
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final Integer skinId;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        // поток, который сейчас внутри emitter.send, и когда он туда вошёл (0 — не отправляет)
+        private Thread sendingThread;
+        private volatile long sendStartedAt;
+
+        Subscriber(SseEmitter emitter, Integer skinId, int bufferSize) {
+            this.emitter = emitter;
+            this.skinId = skinId;
+            this.queue = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        void offer(SseEmitter.SseEventBuilder event) {
+            if (closed.get()) return;
+            if (!queue.offer(event)) {
+                // клиент не успевает забирать события — отключаем
+                close();
+                return;
+            }
+            scheduleDrain();
+        }
+
+        void close() {
+            if (!closed.compareAndSet(false, true)) return;
+            subscribers.remove(this);
+            queue.clear();
+            synchronized (this) {
+                if (sendingThread != null) sendingThread.interrupt();
+            }
+            // эмиттер завершит поток отправки — сразу или когда прерванный send вернётся
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                SseEmitter.SseEventBuilder event;
+                while (!closed.get() && (event = queue.poll()) != null) {
+                    send(event);
+                }
+            } catch (IOException | IllegalStateException e) {
+                closed.set(true);
+                subscribers.remove(this);
+            } finally {
+                draining.set(false);
+            }
+            if (closed.get()) {
+                try {
+                    emitter.complete();
+                } catch (RuntimeException ignored) {
+                    // клиент уже ушёл
+                }
+                return;
+            }
+            if (!queue.isEmpty()) scheduleDrain();
+        }
+
+        private void send(SseEmitter.SseEventBuilder event) throws IOException {
+            synchronized (this) {
+                sendingThread = Thread.currentThread();
+            }
+            sendStartedAt = System.nanoTime();
+            try {
+                emitter.send(event);
+            } finally {
+                sendStartedAt = 0;
+                synchronized (this) {
+                    sendingThread = null;
+                }
+                // прерывание, пришедшее к уже завершённой отправке, не должно задеть следующего подписчика
+                Thread.interrupted();
+            }
+        }
+    }
+}
@@ -1,10 +1,19 @@
 package ru.itmo.backend.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.itmo.backend.dao.BalanceDao;
+import ru.itmo.backend.dao.PaymentDao;
 import ru.itmo.backend.dto.payment.CreatePaymentOperationRequest;
 import ru.itmo.backend.dto.payment.PaymentOperationDto;
+import ru.itmo.backend.dto.payment.PaymentOperationPageDto;
+import ru.itmo.backend.dto.payment.PaymentPipelineStatsDto;
+import ru.itmo.backend.events.PaymentCreatedEvent;
 import ru.itmo.backend.exception.BadRequestException;
 import ru.itmo.backend.exception.NotFoundException;
 import ru.itmo.backend.model.PaymentOperation;
@@ -12,8 +21,19 @@ import ru.itmo.backend.model.User;
 import ru.itmo.backend.model.enums.PaymentMethod;
 import ru.itmo.backend.model.enums.PaymentOperationType;
 import ru.itmo.backend.model.enums.PaymentStatus;
+import ru.itmo.backend.payment.PaymentPipeline;
+import ru.itmo.backend.payment.PaymentRequest;
 import ru.itmo.backend.repository.PaymentOperationRepository;
 import ru.itmo.backend.repository.UserRepository;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 
 import java.util.List;
 
@@ -21,11 +41,28 @@ import java.util.List;
 @RequiredArgsConstructor
 public class PaymentService {
 
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int EXPORT_FETCH_SIZE = 500;
+
     private final PaymentOperationRepository paymentOperationRepository;
     private final UserRepository userRepository;
+    private final IdempotencyService idempotencyService;
+    private final PaymentDao paymentDao;
+    private final BalanceDao balanceDao;
+    private final PaymentPipeline paymentPipeline;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PlatformTransactionManager transactionManager;
+    private final JsonMapper jsonMapper;
 
     @Transactional
-    public PaymentOperationDto create(CreatePaymentOperationRequest req) {
+    public PaymentOperationDto create(CreatePaymentOperationRequest req, String idempotencyKey) {
+        String request = req.getUserId() + ":" + req.getAmount() + ":" + req.getType() + ":" + req.getMethod() + ":" + req.getStatus();
+        return idempotencyService.execute("payment-create", idempotencyKey, request, PaymentOperationDto.class,
+                () -> doCreate(req));
+    }
+
+    private PaymentOperationDto doCreate(CreatePaymentOperationRequest req) {
         if (req.getUserId() == null || req.getUserId() <= 0) throw new BadRequestException("userId must be > 0");
         if (req.getAmount() == null || req.getAmount() <= 0) throw new BadRequestException("amount must be > 0");
         if (req.getType() == null || req.getType().isBlank()) throw new BadRequestException("type is required");
@@ -38,15 +75,25 @@ public class PaymentService {
         PaymentOperation op = new PaymentOperation();
         op.setUser(user);
         op.setAmount(req.getAmount());
+        op.setCreatedAt(LocalDateTime.now());
 
         op.setType(parseEnum(req.getType(), PaymentOperationType.class, "type"));
         op.setMethod(parseEnum(req.getMethod(), PaymentMethod.class, "method"));
         op.setStatus(parseEnum(req.getStatus(), PaymentStatus.class, "status"));
 
         PaymentOperation saved = paymentOperationRepository.save(op);
+        // PENDING уходит в асинхронный пайплайн после коммита
+        if (saved.getStatus() == PaymentStatus.PENDING) {
+            eventPublisher.publishEvent(new PaymentCreatedEvent(new PaymentRequest(
+                    saved.getId(), user.getId(), saved.getType(), saved.getMethod(), saved.getAmount())));
+        }
         return toDto(saved);
     }
 
+    public PaymentPipelineStatsDto getPipelineStats() {
+        return paymentPipeline.stats();
+    }
+
     @Transactional(readOnly = true)
     public PaymentOperationDto getById(Integer id) {
         if (id == null || id <= 0) throw new BadRequestException("id must be > 0");
@@ -57,14 +104,64 @@ public class PaymentService {
     @Transactional(readOnly = true)
     public List<PaymentOperationDto> getUserOperations(Integer userId) {
         if (userId == null || userId <= 0) throw new BadRequestException("userId must be > 0");
-        userRepository.findById(userId).orElseThrow(() -> new NotFoundException("User not found: " + userId));
 
-        return paymentOperationRepository.findAllByUser_IdOrderByCreatedAtDesc(userId)
+        List<PaymentOperationDto> result = paymentOperationRepository.findAllByUser_IdOrderByCreatedAtDesc(userId)
                 .stream().map(this::toDto).toList();
+        // существование пользователя проверяем, только когда операций нет
+        if (result.isEmpty()) requireUser(userId);
+        return result;
+    }
+
+    @Transactional(readOnly = true)
+    public PaymentOperationPageDto getUserOperationsPage(Integer userId, String cursor, Integer limit) {
+        if (userId == null || userId <= 0) throw new BadRequestException("userId must be > 0");
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+            throw new BadRequestException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        PaymentOperationPageDto page = paymentDao.findUserPage(userId, cursor, pageSize);
+        if (cursor == null && page.getItems().isEmpty()) requireUser(userId);
+        return page;
+    }
+
+    // проверки делаются сразу, а строки пишутся в ответ уже при отдаче тела, по мере чтения курсора
+    public StreamingResponseBody exportUserOperations(Integer userId, String format) {
+        if (userId == null || userId <= 0) throw new BadRequestException("userId must be > 0");
+        boolean csv;
+        if (format == null || format.equalsIgnoreCase("csv")) {
+            csv = true;
+        } else if (format.equalsIgnoreCase("ndjson")) {
+            csv = false;
+        } else {
+            throw new BadRequestException("Invalid format: " + format);
+        }
+        requireUser(userId);
+
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(true);
+        return out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            if (csv) writer.write("id,type,method,status,amount,created_at,user_id\n");
+            tx.executeWithoutResult(status -> paymentDao.streamUserOperations(userId, EXPORT_FETCH_SIZE, op -> {
+                try {
+                    writer.write(csv ? toCsv(op) : jsonMapper.writeValueAsString(op));
+                    writer.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+            writer.flush();
+        };
     }
 
     @Transactional
-    public PaymentOperationDto updateStatus(Integer id, String status) {
+    public PaymentOperationDto updateStatus(Integer id, String status, String idempotencyKey) {
+        return idempotencyService.execute("payment-status", idempotencyKey, id + ":" + status, PaymentOperationDto.class,
+                () -> doUpdateStatus(id, status));
+    }
+
+    private PaymentOperationDto doUpdateStatus(Integer id, String status) {
         if (id == null || id <= 0) throw new BadRequestException("id must be > 0");
         if (status == null || status.isBlank()) throw new BadRequestException("status is required");
 
@@ -80,10 +177,8 @@ public class PaymentService {
         }
 
         // применяем баланс ТОЛЬКО при переходе в SUCCESS
-        if (oldStatus != PaymentStatus.SUCCESS && newStatus == PaymentStatus.SUCCESS) {
-
-            User user = op.getUser();
-            if (user == null) throw new BadRequestException("PaymentOperation has no user");
+        if (newStatus == PaymentStatus.SUCCESS) {
+            if (op.getUser() == null) throw new BadRequestException("PaymentOperation has no user");
 
             PaymentOperationType type = op.getType();
             if (type == null) throw new BadRequestException("PaymentOperation.type is required");
@@ -91,23 +186,21 @@ public class PaymentService {
             Integer amount = op.getAmount();
             if (amount == null || amount <= 0) throw new BadRequestException("amount must be > 0");
 
-            Integer current = user.getBalance();
-            if (current == null) current = 0;
-
+            int delta;
             if (type == PaymentOperationType.DEPOSIT) {
-                user.setBalance(current + amount);
-                userRepository.save(user);
-
+                delta = amount;
             } else if (type == PaymentOperationType.WITHDRAW) {
-                if (current < amount) {
-                    throw new BadRequestException("Insufficient funds for withdraw");
-                }
-                user.setBalance(current - amount);
-                userRepository.save(user);
-
+                delta = -amount;
             } else {
                 throw new BadRequestException("Unsupported payment type: " + type);
             }
+
+            // параллельный запрос уже провёл эту операцию — второй раз баланс не трогаем
+            if (paymentDao.markSuccess(op.getId())) {
+                if (!balanceDao.applyDelta(op.getUser().getId(), delta, type.name(), op.getId())) {
+                    throw new BadRequestException("Insufficient funds for withdraw");
+                }
+            }
         }
 
         op.setStatus(newStatus);
@@ -123,6 +216,15 @@ public class PaymentService {
         paymentOperationRepository.deleteById(id);
     }
 
+    private void requireUser(Integer userId) {
+        if (!userRepository.existsById(userId)) throw new NotFoundException("User not found: " + userId);
+    }
+
+    private static String toCsv(PaymentOperationDto op) {
+        return op.getId() + "," + op.getType() + "," + op.getMethod() + "," + op.getStatus() + ","
+                + op.getAmount() + "," + (op.getCreatedAt() != null ? op.getCreatedAt() : "") + "," + op.getUserId();
+    }
+
     private PaymentOperationDto toDto(PaymentOperation op) {
         return PaymentOperationDto.builder()
                 .id(op.getId())
@@ -1,21 +1,36 @@
 package ru.itmo.backend.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.itmo.backend.dao.PurchaseDao;
+import ru.itmo.backend.dao.SaleListingDao;
+import ru.itmo.backend.events.SaleListingChangedEvent;
 import ru.itmo.backend.exception.BadRequestException;
 import ru.itmo.backend.exception.InsufficientFundsException;
+import ru.itmo.backend.index.OrderBook;
+import ru.itmo.backend.model.enums.SaleListingStatus;
+
+import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
 public class PurchaseService {
 
     private final PurchaseDao dao;
+    private final SaleListingDao saleListingDao;
+    private final ApplicationEventPublisher eventPublisher;
 
+    @Transactional
     public void executePurchase(int buyerId, int sellerId, int inventoryItemId, int price) {
         try {
+            // листинг находим до CALL: после покупки он уже не ACTIVE
+            Optional<OrderBook.Order> order = saleListingDao.findActiveOrderByInventoryItem(inventoryItemId);
             dao.executePurchase(buyerId, sellerId, inventoryItemId, price);
+            order.ifPresent(o -> eventPublisher.publishEvent(new SaleListingChangedEvent(
+                    o.getSaleListingId(), o.getSkinId(), o.getPrice(), SaleListingStatus.SOLD)));
         } catch (DataAccessException e) {
             String msg = (e.getRootCause() != null) ? e.getRootCause().getMessage() : e.getMessage();
             String lower = (msg == null) ? "" : msg.toLowerCase();
@@ -0,0 +1,142 @@
+package ru.itmo.backend.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.itmo.backend.dao.RentalBookingDao;
+import ru.itmo.backend.dto.rental.RentalAvailabilityDto;
+import ru.itmo.backend.dto.rental.RentalBookingDto;
+import ru.itmo.backend.dto.rental.RentalBookingRequestDto;
+import ru.itmo.backend.dto.rental.RentalSlotDto;
+import ru.itmo.backend.events.RentalBookingChangedEvent;
+import ru.itmo.backend.exception.BadRequestException;
+import ru.itmo.backend.exception.NotFoundException;
+import ru.itmo.backend.index.RentalCalendar;
+import ru.itmo.backend.repository.RentalListingRepository;
+import ru.itmo.backend.repository.UserRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class RentalBookingService {
+
+    // насколько вперёд можно бронировать и запрашивать календарь
+    private static final int HORIZON_DAYS = 365;
+
+    private final RentalBookingDao rentalBookingDao;
+    private final RentalListingRepository rentalListingRepository;
+    private final UserRepository userRepository;
+    private final RentalCalendar rentalCalendar;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Transactional
+    public RentalBookingDto book(RentalBookingRequestDto req) {
+        if (req.getRenterId() == null || req.getRenterId() <= 0) {
+            throw new BadRequestException("renterId must be > 0");
+        }
+        if (req.getAnnouncementId() == null || req.getAnnouncementId() <= 0) {
+            throw new BadRequestException("announcementId must be > 0");
+        }
+        if (req.getDays() == null || req.getDays() <= 0) {
+            throw new BadRequestException("days must be > 0");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime startAt = req.getStartAt();
+        if (startAt == null || !startAt.isAfter(now)) {
+            throw new BadRequestException("startAt must be in the future");
+        }
+        if (startAt.isAfter(now.plusDays(HORIZON_DAYS))) {
+            throw new BadRequestException("startAt must be within " + HORIZON_DAYS + " days");
+        }
+        LocalDateTime endAt = startAt.plusDays(req.getDays());
+        int listingId = req.getAnnouncementId();
+
+        // занятое по календарю окно отсекаем без блокировок и запросов
+        if (!rentalCalendar.isFree(listingId, startAt, endAt)) {
+            throw new BadRequestException("Rental listing is not free in the requested period");
+        }
+        if (!userRepository.existsById(req.getRenterId())) {
+            throw new NotFoundException("User not found");
+        }
+
+        RentalBookingDao.Listing listing = rentalBookingDao.lockListing(listingId)
+                .orElseThrow(() -> new NotFoundException("Rental listing not found"));
+        if (listing.getOwnerId() == req.getRenterId()) {
+            throw new BadRequestException("Cannot rent own listing");
+        }
+        if (req.getDays() > listing.getMaxDays()) {
+            throw new BadRequestException("days must not exceed maxDays (" + listing.getMaxDays() + ")");
+        }
+        if (rentalBookingDao.overlaps(listingId, startAt, endAt)) {
+            throw new BadRequestException("Rental listing is not free in the requested period");
+        }
+
+        RentalBookingDto booking = rentalBookingDao.insert(listingId, req.getRenterId(), startAt, endAt, req.getDays());
+        eventPublisher.publishEvent(new RentalBookingChangedEvent(
+                booking.getId(), listingId, booking.getStartAt(), booking.getEndAt(), true));
+        return booking;
+    }
+
+    @Transactional
+    public RentalBookingDto cancel(Integer bookingId, Integer renterId) {
+        if (bookingId == null || bookingId <= 0) throw new BadRequestException("bookingId must be > 0");
+        if (renterId == null || renterId <= 0) throw new BadRequestException("renterId must be > 0");
+
+        RentalBookingDto booking = rentalBookingDao.cancel(bookingId, renterId).orElseThrow(() -> {
+            RentalBookingDto existing = rentalBookingDao.findById(bookingId)
+                    .filter(b -> b.getRenterId().equals(renterId))
+                    .orElseThrow(() -> new NotFoundException("Booking not found: " + bookingId));
+            return new BadRequestException("Booking is already " + existing.getStatus());
+        });
+        eventPublisher.publishEvent(new RentalBookingChangedEvent(
+                booking.getId(), booking.getListingId(), booking.getStartAt(), booking.getEndAt(), false));
+        return booking;
+    }
+
+    @Transactional(readOnly = true)
+    public List<RentalBookingDto> getRenterBookings(Integer renterId) {
+        if (renterId == null || renterId <= 0) throw new BadRequestException("renterId must be > 0");
+        return rentalBookingDao.findByRenter(renterId);
+    }
+
+    public RentalAvailabilityDto getAvailability(Integer listingId, LocalDateTime from, LocalDateTime to) {
+        requireListing(listingId);
+        if (from == null || to == null || !to.isAfter(from)) {
+            throw new BadRequestException("to must be after from");
+        }
+        if (Duration.between(from, to).toDays() > HORIZON_DAYS) {
+            throw new BadRequestException("period must not exceed " + HORIZON_DAYS + " days");
+        }
+        List<RentalSlotDto> busy = rentalCalendar.busy(listingId, from, to);
+        return RentalAvailabilityDto.builder()
+                .listingId(listingId)
+                .from(from)
+                .to(to)
+                .free(busy.isEmpty())
+                .busy(busy)
+                .build();
+    }
+
+    public RentalSlotDto getNextFree(Integer listingId, LocalDateTime from, Integer days) {
+        requireListing(listingId);
+        if (days == null || days <= 0) throw new BadRequestException("days must be > 0");
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime start = rentalCalendar.nextFree(listingId, from == null || from.isBefore(now) ? now : from,
+                Duration.ofDays(days));
+        return RentalSlotDto.builder()
+                .startAt(start)
+                .endAt(start.plusDays(days))
+                .build();
+    }
+
+    private void requireListing(Integer listingId) {
+        if (listingId == null || listingId <= 0) throw new BadRequestException("listingId must be > 0");
+        if (!rentalListingRepository.existsById(listingId)) {
+            throw new NotFoundException("Rental listing not found");
+        }
+    }
+}
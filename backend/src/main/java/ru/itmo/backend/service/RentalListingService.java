@@ -3,10 +3,15 @@ package ru.itmo.backend.service;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.itmo.backend.dao.KeysetCursor;
+import ru.itmo.backend.dao.RentalDao;
 import ru.itmo.backend.dto.rental.CreateRentalListingRequestDto;
 import ru.itmo.backend.dto.rental.RentalListingDto;
+import ru.itmo.backend.dto.rental.RentalListingFilter;
+import ru.itmo.backend.dto.rental.RentalListingPageDto;
 import ru.itmo.backend.exception.BadRequestException;
 import ru.itmo.backend.exception.NotFoundException;
+import ru.itmo.backend.index.RentalOccupancyIndex;
 import ru.itmo.backend.model.InventoryItem;
 import ru.itmo.backend.model.RentalListing;
 import ru.itmo.backend.model.enums.OwnershipFlag;
@@ -17,27 +22,82 @@ import ru.itmo.backend.repository.SaleListingRepository;
 import ru.itmo.backend.repository.UserRepository;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 public class RentalListingService {
 
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+    // сколько порций дочитываем в обход занятых, прежде чем отдать фильтрацию SQL
+    private static final int MAX_CHUNKS = 4;
+
     private final RentalListingRepository rentalListingRepository;
+    private final RentalDao rentalDao;
+    private final RentalOccupancyIndex occupancyIndex;
 
     private final InventoryItemRepository inventoryItemRepository;
     private final SaleListingRepository saleListingRepository;
     private final UserRepository userRepository;
 
     @Transactional(readOnly = true)
-    public List<RentalListingDto> getListings(Integer ownerId) {
-        if (ownerId != null && ownerId <= 0) {
-            throw new BadRequestException("ownerId must be positive");
+    public List<RentalListingDto> getListings(RentalListingFilter filter) {
+        return findAvailable(validate(filter), null, null);
+    }
+
+    @Transactional(readOnly = true)
+    public RentalListingPageDto getListingsPage(RentalListingFilter filter, String cursor, Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+            throw new BadRequestException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        Integer beforeId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                beforeId = Integer.parseInt(KeysetCursor.decode(cursor.trim(), 1)[0]);
+            } catch (NumberFormatException e) {
+                throw new BadRequestException("Invalid cursor");
+            }
         }
 
-        return rentalListingRepository.findAvailable(ownerId).stream()
-                .map(this::toDto)
-                .toList();
+        // на одну строку больше, чтобы понять, есть ли следующая страница
+        List<RentalListingDto> rows = findAvailable(validate(filter), beforeId, pageSize + 1);
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            nextCursor = KeysetCursor.encode(rows.get(pageSize - 1).getListingId());
+        }
+        return RentalListingPageDto.builder()
+                .items(rows)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    // занятые отсеиваются по индексу занятости; пока он не загружен — подзапросом в SQL.
+    // если занятые съели часть выборки, дочитываем следующую порцию с того же места.
+    // порция не меньше limit, чтобы полоса занятых не превращалась в запрос на каждую строку;
+    // после MAX_CHUNKS порций страницу целиком собирает SQL с NOT EXISTS
+    private List<RentalListingDto> findAvailable(RentalListingFilter filter, Integer beforeId, Integer limit) {
+        if (!occupancyIndex.isLoaded()) {
+            return rentalDao.findListings(filter, true, beforeId, limit);
+        }
+        List<RentalListingDto> result = new ArrayList<>();
+        Integer after = beforeId;
+        for (int i = 0; i < MAX_CHUNKS; i++) {
+            Integer want = limit == null ? null : Math.max(limit, 2 * (limit - result.size()));
+            List<RentalListingDto> chunk = rentalDao.findListings(filter, false, after, want);
+            for (RentalListingDto dto : chunk) {
+                if (occupancyIndex.isRented(dto.getListingId())) continue;
+                result.add(dto);
+                // курсор строится по последней отданной строке, поэтому лишнее просто не берём
+                if (limit != null && result.size() == limit) return result;
+            }
+            if (want == null || chunk.size() < want) return result;
+            after = chunk.get(chunk.size() - 1).getListingId();
+        }
+        return rentalDao.findListings(filter, true, beforeId, limit);
     }
 
     @Transactional
@@ -94,6 +154,23 @@ public class RentalListingService {
         return toDto(saved);
     }
 
+    private static RentalListingFilter validate(RentalListingFilter filter) {
+        if (filter.getOwnerId() != null && filter.getOwnerId() <= 0) {
+            throw new BadRequestException("ownerId must be positive");
+        }
+        if (filter.getSkinId() != null && filter.getSkinId() <= 0) {
+            throw new BadRequestException("skinId must be positive");
+        }
+        if (filter.getMinPricePerDay() != null && filter.getMaxPricePerDay() != null
+                && filter.getMinPricePerDay() > filter.getMaxPricePerDay()) {
+            throw new BadRequestException("minPricePerDay must not exceed maxPricePerDay");
+        }
+        if (filter.getMinMaxDays() != null && filter.getMinMaxDays() <= 0) {
+            throw new BadRequestException("minDays must be positive");
+        }
+        return filter;
+    }
+
     private RentalListingDto toDto(RentalListing rl) {
         return RentalListingDto.builder()
                 .listingId(rl.getId())
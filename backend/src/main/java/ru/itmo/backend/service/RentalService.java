@@ -1,19 +1,50 @@
 package ru.itmo.backend.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.itmo.backend.dao.BalanceDao;
+import ru.itmo.backend.dao.RentalBookingDao;
 import ru.itmo.backend.dao.RentalDao;
+import ru.itmo.backend.dto.rental.BulkRentItemResultDto;
+import ru.itmo.backend.dto.rental.BulkRentRequestDto;
+import ru.itmo.backend.dto.rental.BulkRentResultDto;
 import ru.itmo.backend.dto.rental.RentResult;
+import ru.itmo.backend.events.RentalStartedEvent;
 import ru.itmo.backend.exception.BadRequestException;
 import ru.itmo.backend.exception.InsufficientFundsException;
 import ru.itmo.backend.exception.NotFoundException;
+import ru.itmo.backend.index.RentalCalendar;
+import ru.itmo.backend.index.RentalOccupancyIndex;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 @Service
 @RequiredArgsConstructor
 public class RentalService {
 
+    private static final int MAX_BULK_SIZE = 20;
+
     private final RentalDao rentalDao;
+    private final RentalBookingDao rentalBookingDao;
+    private final BalanceDao balanceDao;
+    private final PlatformTransactionManager transactionManager;
+    private final RentalOccupancyIndex occupancyIndex;
+    private final RentalCalendar rentalCalendar;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Transactional
     public RentResult rentSkin(Integer renterId, Integer announcementId, Integer days) {
@@ -27,6 +58,22 @@ public class RentalService {
             throw new BadRequestException("days must be > 0");
         }
 
+        // занятый листинг отсекаем по индексу, не доходя до rent_skin
+        if (occupancyIndex.isRented(announcementId)) {
+            throw new BadRequestException("Rental listing is already rented");
+        }
+        // аренда с текущего момента не должна задевать будущие брони
+        LocalDateTime now = LocalDateTime.now();
+        if (!rentalCalendar.isFree(announcementId, now, now.plusDays(days))) {
+            throw new BadRequestException("Rental listing is booked in the requested period");
+        }
+        // календарь локален для узла и обновляется с задержкой, а rent_skin броней не видит:
+        // окончательно решает проверка под той же блокировкой листинга, что берёт бронирование
+        if (rentalBookingDao.lockListing(announcementId).isPresent()
+                && rentalBookingDao.overlaps(announcementId, now, now.plusDays(days))) {
+            throw new BadRequestException("Rental listing is not free in the requested period");
+        }
+
         RentResult result = rentalDao.rentSkin(renterId, announcementId, days);
 
         if (!result.isSuccess()) {
@@ -42,19 +89,147 @@ public class RentalService {
             throw new BadRequestException(result.getMessage());
         }
 
+        if (result.getRentalContractId() != null) {
+            rentalDao.findContractPeriod(result.getRentalContractId()).ifPresent(p ->
+                    eventPublisher.publishEvent(new RentalStartedEvent(announcementId, p.getStartAt(), p.getEndAt())));
+        }
         return result;
     }
 
+    // все контракты пачки создаются в одной транзакции: либо все, либо ни одного.
+    // баланс проверяется один раз на общую сумму, до первого rent_skin
     @Transactional
-    public int cleanupExpiredRentals() {
-        return rentalDao.cleanupExpiredRentals();
+    public BulkRentResultDto rentBulk(BulkRentRequestDto req) {
+        Integer renterId = req.getRenterId();
+        if (renterId == null || renterId <= 0) {
+            throw new BadRequestException("renterId must be > 0");
+        }
+        List<BulkRentRequestDto.Item> items = req.getItems();
+        if (items == null || items.isEmpty()) {
+            throw new BadRequestException("items must not be empty");
+        }
+        if (items.size() > MAX_BULK_SIZE) {
+            throw new BadRequestException("At most " + MAX_BULK_SIZE + " listings per request");
+        }
+        Set<Integer> ids = new HashSet<>();
+        for (BulkRentRequestDto.Item item : items) {
+            if (item.getAnnouncementId() == null || item.getAnnouncementId() <= 0) {
+                throw new BadRequestException("announcementId must be > 0");
+            }
+            if (item.getDays() == null || item.getDays() <= 0) {
+                throw new BadRequestException("days must be > 0");
+            }
+            if (!ids.add(item.getAnnouncementId())) {
+                throw new BadRequestException("Duplicate announcementId: " + item.getAnnouncementId());
+            }
+        }
+
+        // всё, что можно отсечь без rent_skin: условия листингов одним запросом, занятость по индексам
+        Map<Integer, RentalDao.Terms> terms = rentalDao.findTerms(ids);
+        LocalDateTime now = LocalDateTime.now();
+        Map<Integer, String> errors = new HashMap<>();
+        long totalCost = 0;
+        for (BulkRentRequestDto.Item item : items) {
+            RentalDao.Terms t = terms.get(item.getAnnouncementId());
+            String error = bulkRentError(item, t, renterId, now);
+            if (error != null) errors.put(item.getAnnouncementId(), error);
+            else totalCost += (long) t.getPricePerDay() * item.getDays();
+        }
+        if (!errors.isEmpty()) {
+            return bulkResult(items, terms, Map.of(), errors);
+        }
+        if (totalCost > Integer.MAX_VALUE) {
+            throw new BadRequestException("Total cost is too large");
+        }
+        if (!balanceDao.checkBalance(renterId, (int) totalCost)) {
+            throw new InsufficientFundsException("Insufficient funds: total cost " + totalCost);
+        }
+
+        // та же проверка броней под блокировкой, что и в rentSkin; листинги блокируем по возрастанию id
+        List<BulkRentRequestDto.Item> byId = new ArrayList<>(items);
+        byId.sort(Comparator.comparing(BulkRentRequestDto.Item::getAnnouncementId));
+        for (BulkRentRequestDto.Item item : byId) {
+            rentalBookingDao.lockListing(item.getAnnouncementId());
+            if (rentalBookingDao.overlaps(item.getAnnouncementId(), now, now.plusDays(item.getDays()))) {
+                errors.put(item.getAnnouncementId(), "Rental listing is not free in the requested period");
+            }
+        }
+        if (!errors.isEmpty()) {
+            return bulkResult(items, terms, Map.of(), errors);
+        }
+
+        TransactionTemplate nested = new TransactionTemplate(transactionManager);
+        nested.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED);
+        Map<Integer, Integer> contracts = new HashMap<>();
+        for (BulkRentRequestDto.Item item : items) {
+            RentResult result;
+            try {
+                result = nested.execute(status -> rentalDao.rentSkin(renterId, item.getAnnouncementId(), item.getDays()));
+            } catch (DataAccessException e) {
+                result = null;
+            }
+            if (result != null && result.isSuccess() && result.getRentalContractId() != null) {
+                contracts.put(item.getAnnouncementId(), result.getRentalContractId());
+            } else {
+                errors.put(item.getAnnouncementId(),
+                        result == null || result.getMessage() == null ? "Rent failed" : result.getMessage());
+            }
+        }
+
+        if (!errors.isEmpty()) {
+            // один отказ откатывает всю пачку
+            TransactionInterceptor.currentTransactionStatus().setRollbackOnly();
+            for (Integer id : contracts.keySet()) {
+                errors.put(id, "Rolled back: another listing in the request failed");
+            }
+            return bulkResult(items, terms, Map.of(), errors);
+        }
+
+        Map<Integer, RentalDao.Period> periods = rentalDao.findContractPeriods(contracts.values());
+        contracts.forEach((listingId, contractId) -> {
+            RentalDao.Period p = periods.get(contractId);
+            if (p != null) {
+                eventPublisher.publishEvent(new RentalStartedEvent(listingId, p.getStartAt(), p.getEndAt()));
+            }
+        });
+        return bulkResult(items, terms, contracts, errors);
+    }
+
+    private String bulkRentError(BulkRentRequestDto.Item item, RentalDao.Terms terms, int renterId, LocalDateTime now) {
+        if (terms == null) return "Rental listing not found";
+        if (terms.getOwnerId() == renterId) return "Cannot rent own listing";
+        if (item.getDays() > terms.getMaxDays()) return "days must not exceed maxDays (" + terms.getMaxDays() + ")";
+        if (occupancyIndex.isRented(item.getAnnouncementId())) return "Rental listing is already rented";
+        if (!rentalCalendar.isFree(item.getAnnouncementId(), now, now.plusDays(item.getDays()))) {
+            return "Rental listing is booked in the requested period";
+        }
+        return null;
     }
 
-    @Transactional(readOnly = true)
-    public java.util.List<ru.itmo.backend.dto.rental.RentalListingDto> getAvailableListings(Integer ownerId) {
-        if (ownerId != null && ownerId <= 0) {
-            throw new BadRequestException("ownerId must be positive");
+    private static BulkRentResultDto bulkResult(List<BulkRentRequestDto.Item> items, Map<Integer, RentalDao.Terms> terms,
+                                                Map<Integer, Integer> contracts, Map<Integer, String> errors) {
+        long totalCost = 0;
+        List<BulkRentItemResultDto> results = new ArrayList<>();
+        for (BulkRentRequestDto.Item item : items) {
+            RentalDao.Terms t = terms.get(item.getAnnouncementId());
+            Integer cost = t == null ? null : t.getPricePerDay() * item.getDays();
+            Integer contractId = contracts.get(item.getAnnouncementId());
+            if (contractId != null && cost != null) totalCost += cost;
+            results.add(BulkRentItemResultDto.builder()
+                    .announcementId(item.getAnnouncementId())
+                    .days(item.getDays())
+                    .cost(cost)
+                    .rentalContractId(contractId)
+                    .success(contractId != null)
+                    .error(errors.get(item.getAnnouncementId()))
+                    .build());
         }
-        return rentalDao.getAvailableRentalListings(ownerId);
+        return BulkRentResultDto.builder()
+                .success(errors.isEmpty())
+                .total(items.size())
+                .rented(contracts.size())
+                .totalCost(totalCost)
+                .results(results)
+                .build();
     }
-}
\ No newline at end of file
+}
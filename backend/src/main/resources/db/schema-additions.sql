@@ -0,0 +1,121 @@
+-- Дополнительные индексы/таблицы поверх основной схемы csmark.
+-- Скрипт идемпотентный, выполняется при старте (spring.sql.init).
+
+-- keyset-пагинация витрины: /market/sale-listings/page
+CREATE INDEX IF NOT EXISTS idx_sale_listings_active_id
+    ON sale_listings (id) WHERE status = 'ACTIVE';
+CREATE INDEX IF NOT EXISTS idx_sale_listings_active_price
+    ON sale_listings (price, id) WHERE status = 'ACTIVE';
+CREATE INDEX IF NOT EXISTS idx_sale_listings_active_created
+    ON sale_listings (created_at, id) WHERE status = 'ACTIVE';
+
+-- версия витрины для ETag, общая для всех узлов (MarketVersion)
+CREATE SEQUENCE IF NOT EXISTS market_version_seq;
+
+-- одна instant-цена на (скин, автор): upsert через ON CONFLICT в пакетной загрузке.
+-- до появления индекса старые дубли схлопываются в самую свежую цену (как её читает findLatest),
+-- иначе индекс не создастся; когда индекс уже есть, удаление не выполняется
+DELETE FROM instant_buy_prices
+WHERE NOT EXISTS (SELECT 1 FROM pg_indexes WHERE indexname = 'ux_instant_buy_prices_skin_user')
+  AND id IN (
+    SELECT id
+    FROM (
+        SELECT id, row_number() OVER (PARTITION BY skin_id, user_id
+                                      ORDER BY updated_at DESC NULLS LAST, id DESC) AS rn
+        FROM instant_buy_prices
+        WHERE user_id IS NOT NULL
+    ) d
+    WHERE rn > 1
+  );
+CREATE UNIQUE INDEX IF NOT EXISTS ux_instant_buy_prices_skin_user
+    ON instant_buy_prices (skin_id, user_id);
+
+-- живые резервы корзины по сроку: загрузка трекера истечений на старте
+CREATE INDEX IF NOT EXISTS idx_cart_items_reserved_until
+    ON cart_items (reserved_until) WHERE item_status = 'RESERVED';
+
+-- ответы на запросы с Idempotency-Key; истёкшие строки чистит IdempotencyService.purgeExpired
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    scope        VARCHAR(32)  NOT NULL,
+    idem_key     VARCHAR(128) NOT NULL,
+    request_hash VARCHAR(128) NOT NULL,
+    response     TEXT,
+    created_at   TIMESTAMP    NOT NULL DEFAULT now(),
+    expires_at   TIMESTAMP    NOT NULL,
+    PRIMARY KEY (scope, idem_key)
+);
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_expires
+    ON idempotency_keys (expires_at);
+
+-- журнал изменений баланса от платежей: только INSERT, см. BalanceDao.applyDelta
+CREATE TABLE IF NOT EXISTS balance_ledger (
+    id            BIGSERIAL    PRIMARY KEY,
+    user_id       INTEGER      NOT NULL,
+    delta         INTEGER      NOT NULL,
+    balance_after INTEGER      NOT NULL,
+    reason        VARCHAR(32)  NOT NULL,
+    ref_id        INTEGER,
+    created_at    TIMESTAMP    NOT NULL DEFAULT now()
+);
+CREATE INDEX IF NOT EXISTS idx_balance_ledger_user_id
+    ON balance_ledger (user_id, id);
+
+-- свёрнутая сумма журнала по пользователю: все строки с rolled_up; ledger_id — наибольший свёрнутый id
+CREATE TABLE IF NOT EXISTS balance_snapshots (
+    user_id   INTEGER   PRIMARY KEY,
+    ledger_id BIGINT    NOT NULL,
+    net_delta BIGINT    NOT NULL,
+    taken_at  TIMESTAMP NOT NULL
+);
+
+-- строка журнала уже учтена в снапшоте. позиции по id недостаточно: id выдаётся при вставке,
+-- и строка долгой транзакции с меньшим id становится видна уже после строк с большими id
+ALTER TABLE balance_ledger ADD COLUMN IF NOT EXISTS rolled_up BOOLEAN NOT NULL DEFAULT false;
+-- переход со снапшотов по позиции: строки до ledger_id уже в net_delta; выполняется один раз, до появления индекса
+UPDATE balance_ledger l
+SET rolled_up = true
+FROM balance_snapshots s
+WHERE NOT EXISTS (SELECT 1 FROM pg_indexes WHERE indexname = 'idx_balance_ledger_not_rolled_up')
+  AND s.user_id = l.user_id
+  AND l.id <= s.ledger_id
+  AND NOT l.rolled_up;
+CREATE INDEX IF NOT EXISTS idx_balance_ledger_not_rolled_up
+    ON balance_ledger (user_id) WHERE NOT rolled_up;
+
+-- аренда PENDING-операции узлом платёжного пайплайна: до lease_until провайдера вызывает только он
+ALTER TABLE payment_operations ADD COLUMN IF NOT EXISTS lease_until TIMESTAMP;
+
+-- выборка PENDING-операций для платёжного пайплайна
+CREATE INDEX IF NOT EXISTS idx_payment_operations_pending
+    ON payment_operations (id) WHERE status = 'PENDING';
+
+-- история платежей пользователя: keyset-страницы и экспорт по (created_at, id) DESC
+CREATE INDEX IF NOT EXISTS idx_payment_operations_user_created
+    ON payment_operations (user_id, created_at DESC, id DESC);
+
+-- каталог аренды: проверка занятости листинга активным контрактом
+CREATE INDEX IF NOT EXISTS idx_rental_contracts_listing_active
+    ON rental_contracts (rental_listing_id, end_at) WHERE status = 'ACTIVE';
+
+-- поиск истекших аренд: диапазон по end_at только среди активных контрактов
+CREATE INDEX IF NOT EXISTS idx_rental_contracts_active_end
+    ON rental_contracts (end_at) WHERE status = 'ACTIVE';
+
+-- будущие бронирования аренды [start_at, end_at); в момент start_at бронь превращается в контракт через rent_skin
+CREATE TABLE IF NOT EXISTS rental_bookings (
+    id                 SERIAL      PRIMARY KEY,
+    rental_listing_id  INTEGER     NOT NULL REFERENCES rental_listings (id) ON DELETE CASCADE,
+    renter_id          INTEGER     NOT NULL REFERENCES users (id),
+    start_at           TIMESTAMP   NOT NULL,
+    end_at             TIMESTAMP   NOT NULL,
+    days               INTEGER     NOT NULL,
+    status             VARCHAR(16) NOT NULL DEFAULT 'BOOKED',
+    rental_contract_id INTEGER,
+    error              TEXT,
+    created_at         TIMESTAMP   NOT NULL DEFAULT now(),
+    CHECK (end_at > start_at)
+);
+CREATE INDEX IF NOT EXISTS idx_rental_bookings_listing_booked
+    ON rental_bookings (rental_listing_id, start_at) WHERE status = 'BOOKED';
+CREATE INDEX IF NOT EXISTS idx_rental_bookings_due
+    ON rental_bookings (start_at) WHERE status = 'BOOKED';
@@ -0,0 +1,49 @@
+package ru.itmo.backend.index;
+
+import org.junit.jupiter.api.Test;
+import ru.itmo.backend.events.SaleListingChangedEvent;
+import ru.itmo.backend.model.enums.SaleListingStatus;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ListingAdmissionGateTest {
+
+    private final ListingAdmissionGate gate = new ListingAdmissionGate(60_000);
+
+    @Test
+    void admitsOneRequestPerListing() {
+        assertThat(gate.tryAcquire(1)).isTrue();
+        assertThat(gate.tryAcquire(1)).isFalse();
+        assertThat(gate.tryAcquire(2)).isTrue();
+
+        gate.release(1);
+        assertThat(gate.tryAcquire(1)).isTrue();
+    }
+
+    @Test
+    void markedListingStaysClosedAfterSlotIsReleased() {
+        assertThat(gate.tryAcquire(1)).isTrue();
+        gate.markUnavailable(1);
+        gate.release(1);
+
+        assertThat(gate.tryAcquire(1)).isFalse();
+        assertThat(gate.rejectedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void listingBackOnSaleReopensGate() {
+        gate.onListingChanged(new SaleListingChangedEvent(1, 7, 100, SaleListingStatus.RESERVED));
+        assertThat(gate.tryAcquire(1)).isFalse();
+
+        gate.onListingChanged(new SaleListingChangedEvent(1, 7, 100, SaleListingStatus.ACTIVE));
+        assertThat(gate.tryAcquire(1)).isTrue();
+    }
+
+    @Test
+    void expiredMarkerDoesNotBlock() {
+        ListingAdmissionGate shortLived = new ListingAdmissionGate(0);
+        shortLived.markUnavailable(1);
+
+        assertThat(shortLived.tryAcquire(1)).isTrue();
+    }
+}
@@ -0,0 +1,45 @@
+package ru.itmo.backend.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.itmo.backend.dao.MarketVersionDao;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MarketVersionTest {
+
+    @Mock
+    private MarketVersionDao marketVersionDao;
+
+    @Test
+    void etagIsServedFromMemoryAfterFirstRead() {
+        MarketVersion version = new MarketVersion(marketVersionDao);
+        when(marketVersionDao.current()).thenReturn(7L);
+
+        assertThat(version.etag()).isEqualTo("W/\"7\"");
+        assertThat(version.etag()).isEqualTo("W/\"7\"");
+
+        verify(marketVersionDao, times(1)).current();
+    }
+
+    @Test
+    void versionNeverMovesBackwards() {
+        MarketVersion version = new MarketVersion(marketVersionDao);
+        when(marketVersionDao.bump()).thenReturn(10L);
+        when(marketVersionDao.current()).thenReturn(9L, 12L);
+
+        version.bump();
+        // опрос вернул значение, прочитанное до нашего сдвига
+        version.refresh();
+        assertThat(version.current()).isEqualTo(10);
+
+        version.refresh();
+        assertThat(version.current()).isEqualTo(12);
+    }
+}
@@ -0,0 +1,111 @@
+package ru.itmo.backend.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.itmo.backend.dao.RentalBookingDao;
+import ru.itmo.backend.dto.rental.RentalSlotDto;
+import ru.itmo.backend.events.RentalBookingChangedEvent;
+import ru.itmo.backend.events.RentalStartedEvent;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RentalCalendarTest {
+
+    private static final int LISTING = 7;
+    private static final LocalDateTime T0 = LocalDateTime.now().plusDays(1).withNano(0);
+
+    @Mock
+    private RentalBookingDao rentalBookingDao;
+
+    private RentalCalendar calendar;
+
+    @BeforeEach
+    void setUp() {
+        // контракт [T0, T0+2d) и бронь [T0+5d, T0+7d)
+        when(rentalBookingDao.findCalendarSlots()).thenReturn(List.of(
+                new RentalBookingDao.Slot(LISTING, null, T0, T0.plusDays(2)),
+                new RentalBookingDao.Slot(LISTING, 1, T0.plusDays(5), T0.plusDays(7))));
+        calendar = new RentalCalendar(rentalBookingDao);
+        calendar.reload();
+    }
+
+    @Test
+    void isFreeDetectsOverlapOnBothEnds() {
+        assertThat(calendar.isFree(LISTING, T0.minusDays(1), T0.plusHours(1))).isFalse();
+        assertThat(calendar.isFree(LISTING, T0.plusDays(1), T0.plusDays(6))).isFalse();
+        assertThat(calendar.isFree(LISTING, T0.plusDays(6), T0.plusDays(8))).isFalse();
+        assertThat(calendar.isFree(LISTING, T0.plusDays(2), T0.plusDays(5))).isTrue();
+        assertThat(calendar.isFree(LISTING + 1, T0, T0.plusDays(10))).isTrue();
+    }
+
+    @Test
+    void intervalsAreHalfOpen() {
+        assertThat(calendar.isFree(LISTING, T0.minusDays(1), T0)).isTrue();
+        assertThat(calendar.isFree(LISTING, T0.plusDays(7), T0.plusDays(8))).isTrue();
+    }
+
+    @Test
+    void busyReturnsIntervalsTouchingThePeriod() {
+        List<RentalSlotDto> busy = calendar.busy(LISTING, T0.plusDays(1), T0.plusDays(6));
+
+        assertThat(busy).extracting(RentalSlotDto::getStartAt).containsExactly(T0, T0.plusDays(5));
+        assertThat(calendar.busy(LISTING, T0.plusDays(2), T0.plusDays(5))).isEmpty();
+    }
+
+    @Test
+    void nextFreeSkipsTooShortGaps() {
+        assertThat(calendar.nextFree(LISTING, T0, Duration.ofDays(3))).isEqualTo(T0.plusDays(2));
+        assertThat(calendar.nextFree(LISTING, T0, Duration.ofDays(4))).isEqualTo(T0.plusDays(7));
+        assertThat(calendar.nextFree(LISTING, T0.minusDays(3), Duration.ofDays(1))).isEqualTo(T0.minusDays(3));
+    }
+
+    @Test
+    void bookingEventsAddAndRemoveIntervals() {
+        calendar.onBookingChanged(new RentalBookingChangedEvent(2, LISTING, T0.plusDays(2), T0.plusDays(5), true));
+        assertThat(calendar.isFree(LISTING, T0.plusDays(3), T0.plusDays(4))).isFalse();
+
+        calendar.onBookingChanged(new RentalBookingChangedEvent(2, LISTING, T0.plusDays(2), T0.plusDays(5), false));
+        assertThat(calendar.isFree(LISTING, T0.plusDays(3), T0.plusDays(4))).isTrue();
+    }
+
+    @Test
+    void removingBookingDoesNotDropForeignInterval() {
+        calendar.onBookingChanged(new RentalBookingChangedEvent(99, LISTING, T0.plusDays(5), T0.plusDays(7), false));
+
+        assertThat(calendar.isFree(LISTING, T0.plusDays(5), T0.plusDays(6))).isFalse();
+    }
+
+    @Test
+    void activatedBookingStaysBusyAsContract() {
+        // активатор публикует старт контракта, затем снятие брони с тем же окном
+        calendar.onRentalStarted(new RentalStartedEvent(LISTING, T0.plusDays(5), T0.plusDays(7)));
+        calendar.onBookingChanged(new RentalBookingChangedEvent(1, LISTING, T0.plusDays(5), T0.plusDays(7), false));
+
+        assertThat(calendar.isFree(LISTING, T0.plusDays(5), T0.plusDays(6))).isFalse();
+        assertThat(calendar.isFree(LISTING, T0.plusDays(7), T0.plusDays(8))).isTrue();
+    }
+
+    @Test
+    void eventsDuringReloadSurviveSnapshotSwap() {
+        // снапшот прочитан до коммитов: в нём ещё бронь 1 и нет брони 2
+        when(rentalBookingDao.findCalendarSlots()).thenAnswer(inv -> {
+            calendar.onBookingChanged(new RentalBookingChangedEvent(1, LISTING, T0.plusDays(5), T0.plusDays(7), false));
+            calendar.onBookingChanged(new RentalBookingChangedEvent(2, LISTING, T0.plusDays(2), T0.plusDays(5), true));
+            return List.of(new RentalBookingDao.Slot(LISTING, 1, T0.plusDays(5), T0.plusDays(7)));
+        });
+
+        calendar.reload();
+
+        assertThat(calendar.isFree(LISTING, T0.plusDays(3), T0.plusDays(4))).isFalse();
+        assertThat(calendar.isFree(LISTING, T0.plusDays(5), T0.plusDays(6))).isTrue();
+    }
+}
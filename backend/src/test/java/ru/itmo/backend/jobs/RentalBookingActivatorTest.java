@@ -0,0 +1,100 @@
+package ru.itmo.backend.jobs;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.itmo.backend.dao.RentalBookingDao;
+import ru.itmo.backend.dao.RentalDao;
+import ru.itmo.backend.dto.rental.RentResult;
+import ru.itmo.backend.dto.rental.RentalBookingDto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RentalBookingActivatorTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 3, 1, 12, 0);
+    private static final RentalBookingDto BOOKING = RentalBookingDto.builder()
+            .id(5).listingId(7).renterId(3).startAt(START).endAt(START.plusDays(2)).days(2).status("BOOKED")
+            .build();
+
+    @Mock
+    private RentalBookingDao rentalBookingDao;
+    @Mock
+    private RentalDao rentalDao;
+    @Mock
+    private RentalExpiryWorker rentalExpiryWorker;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private RentalBookingActivator activator;
+
+    @BeforeEach
+    void setUp() {
+        activator = new RentalBookingActivator(rentalBookingDao, rentalDao, rentalExpiryWorker,
+                eventPublisher, transactionManager, 100, 3_600_000);
+        when(rentalBookingDao.lockDue(100)).thenReturn(List.of(BOOKING));
+    }
+
+    @Test
+    void contractIsMovedToBookingWindow() {
+        when(rentalDao.rentSkin(3, 7, 2)).thenReturn(RentResult.builder().success(true).rentalContractId(11).build());
+        when(rentalDao.findContractPeriod(11)).thenReturn(Optional.empty());
+
+        int processed = activator.activateBatch(START.plusSeconds(10));
+
+        assertThat(processed).isEqualTo(1);
+        verify(rentalDao).setContractPeriod(11, START, START.plusDays(2));
+        verify(rentalBookingDao).markStarted(5, 11);
+    }
+
+    @Test
+    void bookingWaitsForOverdueContract() {
+        when(rentalDao.rentSkin(3, 7, 2)).thenReturn(RentResult.builder().success(false).message("already rented").build());
+        when(rentalBookingDao.hasOverdueContract(7, START)).thenReturn(true);
+
+        int processed = activator.activateBatch(START.plusSeconds(10));
+
+        assertThat(processed).isZero();
+        verify(rentalBookingDao, never()).markFailed(anyInt(), anyString());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void bookingFailsAfterGracePeriod() {
+        when(rentalDao.rentSkin(3, 7, 2)).thenReturn(RentResult.builder().success(false).message("already rented").build());
+
+        int processed = activator.activateBatch(START.plusHours(2));
+
+        assertThat(processed).isEqualTo(1);
+        verify(rentalBookingDao).markFailed(5, "already rented");
+        verify(rentalBookingDao, never()).hasOverdueContract(anyInt(), any());
+    }
+
+    @Test
+    void bookingFailsWhenListingIsTakenByOtherRental() {
+        when(rentalDao.rentSkin(3, 7, 2)).thenReturn(RentResult.builder().success(false).message("already rented").build());
+        when(rentalBookingDao.hasOverdueContract(7, START)).thenReturn(false);
+
+        activator.activateBatch(START.plusSeconds(10));
+
+        verify(rentalBookingDao).markFailed(5, "already rented");
+    }
+}
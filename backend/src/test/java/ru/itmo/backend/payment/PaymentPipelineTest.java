@@ -0,0 +1,125 @@
+package ru.itmo.backend.payment;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.itmo.backend.dao.BalanceDao;
+import ru.itmo.backend.dao.PaymentDao;
+import ru.itmo.backend.events.PaymentCreatedEvent;
+import ru.itmo.backend.model.enums.PaymentMethod;
+import ru.itmo.backend.model.enums.PaymentOperationType;
+import ru.itmo.backend.model.enums.PaymentStatus;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentPipelineTest {
+
+    private static final int POISON = 2;
+
+    @Mock
+    private PaymentProvider provider;
+    @Mock
+    private PaymentDao paymentDao;
+    @Mock
+    private BalanceDao balanceDao;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final Set<Integer> applied = ConcurrentHashMap.newKeySet();
+    private PaymentPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        pipeline = new PaymentPipeline(Optional.of(provider), paymentDao, balanceDao, transactionManager,
+                100, 1, 3, 60_000, 3, 10, 100, 500, 10);
+        lenient().when(provider.process(any())).thenReturn(PaymentProvider.Outcome.APPROVED);
+        lenient().when(paymentDao.claim(anyCollection(), anyLong())).thenAnswer(inv -> {
+            Collection<Integer> ids = inv.getArgument(0);
+            return ids.stream().map(PaymentPipelineTest::request).toList();
+        });
+        // строка POISON валит любую пачку, в которую попала
+        lenient().when(paymentDao.claimSuccess(anyCollection())).thenAnswer(inv -> {
+            Collection<Integer> ids = inv.getArgument(0);
+            if (ids.contains(POISON)) throw new DataIntegrityViolationException("poison");
+            applied.addAll(ids);
+            return ids.stream().map(PaymentPipelineTest::request).toList();
+        });
+        lenient().when(balanceDao.applyDeltas(anyList())).thenAnswer(inv -> {
+            int[] applied = new int[((List<?>) inv.getArgument(0)).size()];
+            Arrays.fill(applied, 1);
+            return applied;
+        });
+        pipeline.onStartup();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pipeline.shutdown();
+    }
+
+    @Test
+    void poisonOperationIsMarkedFailedWithoutBlockingOthers() {
+        for (int id = 1; id <= 3; id++) {
+            pipeline.onPaymentCreated(new PaymentCreatedEvent(request(id)));
+        }
+
+        verify(paymentDao, timeout(10_000)).markFailed(List.of(POISON), PaymentStatus.PENDING);
+        assertThat(pipeline.stats().getApplyFailed()).isEqualTo(1);
+        assertThat(applied).containsExactlyInAnyOrder(1, 3);
+    }
+
+    @Test
+    void operationClaimedByAnotherNodeIsNotSentToProvider() {
+        when(paymentDao.claim(anyCollection(), anyLong())).thenReturn(List.of());
+
+        pipeline.onPaymentCreated(new PaymentCreatedEvent(request(1)));
+
+        verify(paymentDao, timeout(10_000)).claim(List.of(1), 60_000L);
+        verify(provider, never()).process(any());
+        verify(paymentDao, never()).releaseLease(List.of(1));
+    }
+
+    @Test
+    void pipelineWithoutProviderLeavesOperationsPending() {
+        // отдельный мок: общий уже использован запущенным в setUp пайплайном
+        PaymentDao dao = mock(PaymentDao.class);
+        PaymentPipeline disabled = new PaymentPipeline(Optional.empty(), dao, balanceDao, transactionManager,
+                100, 1, 3, 60_000, 3, 10, 100, 500, 10);
+        disabled.onStartup();
+
+        disabled.onPaymentCreated(new PaymentCreatedEvent(request(1)));
+        disabled.recoverPending();
+
+        assertThat(disabled.stats().isEnabled()).isFalse();
+        verifyNoInteractions(dao);
+        disabled.shutdown();
+    }
+
+    private static PaymentRequest request(int id) {
+        return new PaymentRequest(id, 10 + id, PaymentOperationType.DEPOSIT, PaymentMethod.CARD, 100);
+    }
+}
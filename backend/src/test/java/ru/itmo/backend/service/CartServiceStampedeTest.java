@@ -0,0 +1,185 @@
+package ru.itmo.backend.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import ru.itmo.backend.dao.PurchaseDao;
+import ru.itmo.backend.index.ListingAdmissionGate;
+import ru.itmo.backend.model.Cart;
+import ru.itmo.backend.model.CartItem;
+import ru.itmo.backend.model.InventoryItem;
+import ru.itmo.backend.model.SaleListing;
+import ru.itmo.backend.model.Skin;
+import ru.itmo.backend.model.User;
+import ru.itmo.backend.model.enums.CartStatus;
+import ru.itmo.backend.model.enums.SaleListingStatus;
+import ru.itmo.backend.events.SaleListingChangedEvent;
+import ru.itmo.backend.repository.CartItemRepository;
+import ru.itmo.backend.repository.CartRepository;
+import ru.itmo.backend.repository.SaleListingRepository;
+import ru.itmo.backend.repository.UserRepository;
+
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// 500 клиентов одновременно кладут в корзину один и тот же листинг; пул соединений — 10
+class CartServiceStampedeTest {
+
+    private static final int CLIENTS = 500;
+    private static final int POOL_SIZE = 10;
+    private static final int LISTING_ID = 42;
+
+    @Test
+    void gateAdmitsSingleTransactionPerHotListing() throws Exception {
+        Result gated = stampede(new ListingAdmissionGate(2000));
+        Result ungated = stampede(openGate());
+
+        assertThat(gated.succeeded).isEqualTo(1);
+        assertThat(gated.transactions).isEqualTo(1);
+        assertThat(gated.maxPoolInUse).isEqualTo(1);
+        assertThat(ungated.succeeded).isEqualTo(1);
+        assertThat(ungated.transactions).isEqualTo(CLIENTS);
+    }
+
+    private Result stampede(ListingAdmissionGate gate) throws Exception {
+        FakePool pool = new FakePool(POOL_SIZE);
+        CartService service = cartService(gate, pool);
+
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(CLIENTS);
+        AtomicInteger succeeded = new AtomicInteger();
+
+        for (int i = 0; i < CLIENTS; i++) {
+            int client = i;
+            Thread t = new Thread(() -> {
+                try {
+                    start.await();
+                    try {
+                        service.addItem(client + 1, LISTING_ID);
+                        succeeded.incrementAndGet();
+                    } catch (RuntimeException expected) {
+                        // проигравшие получают отказ
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+            t.start();
+        }
+
+        start.countDown();
+        assertThat(done.await(60, TimeUnit.SECONDS)).isTrue();
+
+        return new Result(succeeded.get(), pool.transactions.get(), pool.maxInUse.get());
+    }
+
+    private CartService cartService(ListingAdmissionGate gate, FakePool pool) {
+        CartRepository cartRepository = mock(CartRepository.class);
+        CartItemRepository cartItemRepository = mock(CartItemRepository.class);
+        UserRepository userRepository = mock(UserRepository.class);
+        SaleListingRepository saleListingRepository = mock(SaleListingRepository.class);
+        ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+
+        Skin skin = Skin.builder().id(7).name("AWP | Dragon Lore").build();
+        User seller = User.builder().id(1000).build();
+        InventoryItem inv = InventoryItem.builder().id(99).skin(skin).user(seller).build();
+        SaleListing listing = SaleListing.builder()
+                .id(LISTING_ID).price(100_000).status(SaleListingStatus.ACTIVE).inventoryItem(inv).build();
+
+        // листинг ACTIVE только для первого дошедшего до БД, дальше он уже RESERVED
+        AtomicBoolean available = new AtomicBoolean(true);
+        when(saleListingRepository.findByIdAndStatus(LISTING_ID, SaleListingStatus.ACTIVE)).thenAnswer(x -> {
+            Thread.sleep(2);
+            return available.getAndSet(false) ? Optional.of(listing) : Optional.empty();
+        });
+        when(cartRepository.findWithItemsByUserIdAndStatus(anyInt(), any())).thenAnswer(x -> Optional.of(Cart.builder()
+                .id(x.getArgument(0))
+                .user(User.builder().id(x.getArgument(0)).build())
+                .status(CartStatus.ACTIVE)
+                .build()));
+        when(cartItemRepository.save(any())).thenAnswer(x -> {
+            Thread.sleep(20);
+            CartItem item = x.getArgument(0);
+            item.setId(1);
+            return item;
+        });
+        // события после коммита доходят до шлюза, как @TransactionalEventListener
+        doAnswer(x -> {
+            if (x.getArgument(0) instanceof SaleListingChangedEvent e) gate.onListingChanged(e);
+            return null;
+        }).when(eventPublisher).publishEvent(any(Object.class));
+
+        return new CartService(
+                cartRepository,
+                cartItemRepository,
+                userRepository,
+                saleListingRepository,
+                mock(PurchaseDao.class),
+                null,
+                pool,
+                eventPublisher,
+                gate,
+                null
+        );
+    }
+
+    private static ListingAdmissionGate openGate() {
+        ListingAdmissionGate gate = mock(ListingAdmissionGate.class);
+        when(gate.tryAcquire(anyInt())).thenReturn(true);
+        return gate;
+    }
+
+    // транзакция держит «соединение» из пула от начала до коммита/отката
+    private static final class FakePool implements PlatformTransactionManager {
+        private final Semaphore connections;
+        private final AtomicInteger inUse = new AtomicInteger();
+        private final AtomicInteger maxInUse = new AtomicInteger();
+        private final AtomicInteger transactions = new AtomicInteger();
+
+        FakePool(int size) {
+            this.connections = new Semaphore(size, true);
+        }
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            connections.acquireUninterruptibly();
+            transactions.incrementAndGet();
+            maxInUse.accumulateAndGet(inUse.incrementAndGet(), Math::max);
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+            release();
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+            release();
+        }
+
+        private void release() {
+            inUse.decrementAndGet();
+            connections.release();
+        }
+    }
+
+    private record Result(int succeeded, int transactions, int maxPoolInUse) {
+    }
+}
@@ -0,0 +1,142 @@
+package ru.itmo.backend.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.itmo.backend.dao.PurchaseDao;
+import ru.itmo.backend.dto.cart.CartDto;
+import ru.itmo.backend.dto.cart.CartItemDto;
+import ru.itmo.backend.index.ListingAdmissionGate;
+import ru.itmo.backend.model.Cart;
+import ru.itmo.backend.model.CartItem;
+import ru.itmo.backend.model.InventoryItem;
+import ru.itmo.backend.model.SaleListing;
+import ru.itmo.backend.model.Skin;
+import ru.itmo.backend.model.User;
+import ru.itmo.backend.model.enums.CartItemStatus;
+import ru.itmo.backend.model.enums.CartStatus;
+import ru.itmo.backend.model.enums.SaleListingStatus;
+import ru.itmo.backend.repository.CartItemRepository;
+import ru.itmo.backend.repository.CartRepository;
+import ru.itmo.backend.repository.SaleListingRepository;
+import ru.itmo.backend.repository.UserRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+// каждое обращение к репозиторию — отдельный SQL, поэтому число вызовов и есть число запросов
+@ExtendWith(MockitoExtension.class)
+class CartServiceTest {
+
+    private static final int USER_ID = 5;
+
+    @Mock
+    private CartRepository cartRepository;
+    @Mock
+    private CartItemRepository cartItemRepository;
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private SaleListingRepository saleListingRepository;
+    @Mock
+    private PurchaseDao purchaseDao;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private ListingAdmissionGate admissionGate;
+
+    private CartService cartService;
+    private Cart cart;
+
+    @BeforeEach
+    void setUp() {
+        cartService = new CartService(cartRepository, cartItemRepository, userRepository, saleListingRepository,
+                purchaseDao, null, transactionManager, eventPublisher, admissionGate, null);
+
+        cart = Cart.builder()
+                .id(1)
+                .user(User.builder().id(USER_ID).build())
+                .status(CartStatus.ACTIVE)
+                .items(new ArrayList<>())
+                .build();
+        cart.getItems().add(item(10, listing(100, SaleListingStatus.RESERVED)));
+        cart.getItems().add(item(11, listing(101, SaleListingStatus.RESERVED)));
+        when(cartRepository.findWithItemsByUserIdAndStatus(USER_ID, CartStatus.ACTIVE)).thenReturn(Optional.of(cart));
+    }
+
+    @Test
+    void getCartUsesSingleStatement() {
+        CartDto dto = cartService.getCart(USER_ID);
+
+        assertThat(dto.getItems()).extracting(CartItemDto::getId).containsExactly(10, 11);
+        assertThat(statements()).isEqualTo(1);
+    }
+
+    @Test
+    void addItemBuildsResponseWithoutRereadingCart() {
+        SaleListing listing = listing(102, SaleListingStatus.ACTIVE);
+        when(admissionGate.tryAcquire(102)).thenReturn(true);
+        when(saleListingRepository.findByIdAndStatus(102, SaleListingStatus.ACTIVE)).thenReturn(Optional.of(listing));
+        when(cartItemRepository.save(any())).thenAnswer(x -> {
+            CartItem saved = x.getArgument(0);
+            saved.setId(12);
+            return saved;
+        });
+
+        CartDto dto = cartService.addItem(USER_ID, 102);
+
+        assertThat(dto.getItems()).extracting(CartItemDto::getId).containsExactly(10, 11, 12);
+        // корзина с позициями, листинг со скином, вставка позиции
+        assertThat(statements()).isEqualTo(3);
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void removeItemBuildsResponseWithoutRereadingCart() {
+        SaleListing listing = cart.getItems().get(0).getSaleListing();
+
+        CartDto dto = cartService.removeItem(USER_ID, 10);
+
+        assertThat(dto.getItems()).extracting(CartItemDto::getId).containsExactly(11);
+        // корзина с позициями и удаление позиции; статус листинга не перечитывается
+        assertThat(statements()).isEqualTo(2);
+        verify(cartItemRepository).delete(any());
+        assertThat(listing.getStatus()).isEqualTo(SaleListingStatus.ACTIVE);
+    }
+
+    private int statements() {
+        return List.of(cartRepository, cartItemRepository, userRepository, saleListingRepository).stream()
+                .mapToInt(m -> mockingDetails(m).getInvocations().size())
+                .sum();
+    }
+
+    private CartItem item(int id, SaleListing listing) {
+        return CartItem.builder()
+                .id(id)
+                .cart(cart)
+                .saleListing(listing)
+                .price(listing.getPrice())
+                .itemStatus(CartItemStatus.RESERVED)
+                .build();
+    }
+
+    private static SaleListing listing(int id, SaleListingStatus status) {
+        Skin skin = Skin.builder().id(id * 10).name("Skin " + id).build();
+        InventoryItem inv = InventoryItem.builder().id(id + 1000).skin(skin).user(User.builder().id(1).build()).build();
+        return SaleListing.builder().id(id).price(500).status(status).inventoryItem(inv).build();
+    }
+}
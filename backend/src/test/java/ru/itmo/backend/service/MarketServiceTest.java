@@ -0,0 +1,128 @@
+package ru.itmo.backend.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.itmo.backend.dao.InstantPriceDao;
+import ru.itmo.backend.dao.SaleListingDao;
+import ru.itmo.backend.dto.market.SaleListingBatchItemResultDto;
+import ru.itmo.backend.dto.market.SaleListingBatchResultDto;
+import ru.itmo.backend.dto.market.SaleListingsBatchCancelRequestDto;
+import ru.itmo.backend.dto.market.SaleListingsBatchRepriceRequestDto;
+import ru.itmo.backend.index.InstantPriceCache;
+import ru.itmo.backend.index.MarketVersion;
+import ru.itmo.backend.index.OrderBook;
+import ru.itmo.backend.index.SkinSearchIndex;
+import ru.itmo.backend.repository.InstantBuyRepository;
+import ru.itmo.backend.repository.InventoryItemRepository;
+import ru.itmo.backend.repository.SaleListingRepository;
+import ru.itmo.backend.repository.SkinRepository;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class MarketServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Mock
+    private SkinRepository skinRepository;
+    @Mock
+    private SaleListingRepository saleListingRepository;
+    @Mock
+    private InventoryItemRepository inventoryItemRepository;
+    @Mock
+    private InstantBuyRepository instantBuyRepository;
+    @Mock
+    private OrderBook orderBook;
+    @Mock
+    private SkinSearchIndex skinSearchIndex;
+    @Mock
+    private MarketVersion marketVersion;
+    @Mock
+    private InstantPriceCache instantPriceCache;
+    @Mock
+    private InstantPriceDao instantPriceDao;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private MarketService marketService;
+
+    @BeforeEach
+    void setUp() {
+        marketService = new MarketService(
+                skinRepository,
+                saleListingRepository,
+                inventoryItemRepository,
+                instantBuyRepository,
+                new SaleListingDao(jdbcTemplate),
+                orderBook,
+                skinSearchIndex,
+                marketVersion,
+                instantPriceCache,
+                instantPriceDao,
+                eventPublisher
+        );
+    }
+
+    @Test
+    void activeSaleListingsUseSingleStatement() {
+        marketService.getSaleListings(null);
+
+        assertThat(mockingDetails(jdbcTemplate).getInvocations()).hasSize(1);
+        verifyNoInteractions(saleListingRepository, inventoryItemRepository, skinRepository);
+    }
+
+    @Test
+    void repriceRejectsEveryRowOfDuplicatedId() {
+        SaleListingsBatchRepriceRequestDto req = new SaleListingsBatchRepriceRequestDto();
+        req.setSellerId(42);
+        req.setItems(List.of(reprice(1, 100), reprice(1, 200), reprice(2, 300)));
+
+        SaleListingBatchResultDto result = marketService.repriceSaleListings(req);
+
+        assertThat(result.getResults()).extracting(SaleListingBatchItemResultDto::getError).containsExactly(
+                "Duplicate saleListingId in batch: 1",
+                "Duplicate saleListingId in batch: 1",
+                "Sale listing not found, not active or does not belong to seller");
+        // в БД уходит только листинг 2
+        assertThat(mockingDetails(jdbcTemplate).getInvocations()).hasSize(1);
+    }
+
+    @Test
+    void cancelOfOnlyDuplicatesDoesNotTouchDatabase() {
+        SaleListingsBatchCancelRequestDto req = new SaleListingsBatchCancelRequestDto();
+        req.setSellerId(42);
+        req.setSaleListingIds(List.of(5, 5));
+
+        SaleListingBatchResultDto result = marketService.cancelSaleListings(req);
+
+        assertThat(result.getFailed()).isEqualTo(2);
+        assertThat(result.getResults()).extracting(SaleListingBatchItemResultDto::getError)
+                .containsOnly("Duplicate saleListingId in batch: 5");
+        verifyNoInteractions(jdbcTemplate, eventPublisher);
+    }
+
+    @Test
+    void ownerSaleListingsUseSingleStatement() {
+        marketService.getSaleListings(42);
+
+        assertThat(mockingDetails(jdbcTemplate).getInvocations()).hasSize(1);
+        verifyNoInteractions(saleListingRepository, inventoryItemRepository, skinRepository);
+    }
+
+    private static SaleListingsBatchRepriceRequestDto.Item reprice(int saleListingId, int price) {
+        SaleListingsBatchRepriceRequestDto.Item item = new SaleListingsBatchRepriceRequestDto.Item();
+        item.setSaleListingId(saleListingId);
+        item.setPrice(price);
+        return item;
+    }
+}
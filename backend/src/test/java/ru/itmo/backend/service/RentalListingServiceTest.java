@@ -0,0 +1,94 @@
+package ru.itmo.backend.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.itmo.backend.dao.RentalDao;
+import ru.itmo.backend.dto.rental.RentalListingDto;
+import ru.itmo.backend.dto.rental.RentalListingFilter;
+import ru.itmo.backend.dto.rental.RentalListingPageDto;
+import ru.itmo.backend.index.RentalOccupancyIndex;
+import ru.itmo.backend.repository.InventoryItemRepository;
+import ru.itmo.backend.repository.RentalListingRepository;
+import ru.itmo.backend.repository.SaleListingRepository;
+import ru.itmo.backend.repository.UserRepository;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RentalListingServiceTest {
+
+    private static final RentalListingFilter ANY = RentalListingFilter.builder().build();
+
+    @Mock
+    private RentalListingRepository rentalListingRepository;
+    @Mock
+    private RentalDao rentalDao;
+    @Mock
+    private RentalOccupancyIndex occupancyIndex;
+    @Mock
+    private InventoryItemRepository inventoryItemRepository;
+    @Mock
+    private SaleListingRepository saleListingRepository;
+    @Mock
+    private UserRepository userRepository;
+
+    private RentalListingService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new RentalListingService(rentalListingRepository, rentalDao, occupancyIndex,
+                inventoryItemRepository, saleListingRepository, userRepository);
+        when(occupancyIndex.isLoaded()).thenReturn(true);
+    }
+
+    @Test
+    void chunkIsNeverSmallerThanPage() {
+        // страница 5 (+1 на проверку следующей): 1000..996 свободны, 995..989 заняты
+        when(rentalDao.findListings(eq(ANY), eq(false), isNull(), eq(12))).thenReturn(rows(1000, 12));
+        when(occupancyIndex.isRented(anyInt())).thenAnswer(inv -> {
+            int id = inv.getArgument(0);
+            return id < 996 && id > 988;
+        });
+        // не хватает одной строки, но порция всё равно не меньше страницы
+        when(rentalDao.findListings(ANY, false, 989, 6)).thenReturn(rows(988, 6));
+
+        RentalListingPageDto page = service.getListingsPage(ANY, null, 5);
+
+        assertThat(page.getItems()).extracting(RentalListingDto::getListingId)
+                .containsExactly(1000, 999, 998, 997, 996);
+        assertThat(page.getNextCursor()).isNotNull();
+    }
+
+    @Test
+    void longRentedStretchFallsBackToSql() {
+        when(occupancyIndex.isRented(anyInt())).thenReturn(true);
+        when(rentalDao.findListings(eq(ANY), eq(false), any(), anyInt()))
+                .thenAnswer(inv -> rows(inv.getArgument(2) == null ? 1000 : (Integer) inv.getArgument(2) - 1,
+                        inv.getArgument(3)));
+        when(rentalDao.findListings(eq(ANY), eq(true), isNull(), eq(3))).thenReturn(rows(10, 3));
+
+        RentalListingPageDto page = service.getListingsPage(ANY, null, 2);
+
+        assertThat(page.getItems()).extracting(RentalListingDto::getListingId).containsExactly(10, 9);
+        verify(rentalDao, times(4)).findListings(eq(ANY), eq(false), any(), anyInt());
+    }
+
+    private static List<RentalListingDto> rows(int fromId, int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> RentalListingDto.builder().listingId(fromId - i).build())
+                .toList();
+    }
+}
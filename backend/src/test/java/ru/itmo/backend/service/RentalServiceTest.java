@@ -0,0 +1,101 @@
+package ru.itmo.backend.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.itmo.backend.dao.BalanceDao;
+import ru.itmo.backend.dao.RentalBookingDao;
+import ru.itmo.backend.dao.RentalDao;
+import ru.itmo.backend.dto.rental.BulkRentRequestDto;
+import ru.itmo.backend.dto.rental.BulkRentResultDto;
+import ru.itmo.backend.exception.BadRequestException;
+import ru.itmo.backend.index.RentalCalendar;
+import ru.itmo.backend.index.RentalOccupancyIndex;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RentalServiceTest {
+
+    @Mock
+    private RentalDao rentalDao;
+    @Mock
+    private RentalBookingDao rentalBookingDao;
+    @Mock
+    private BalanceDao balanceDao;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Mock
+    private RentalOccupancyIndex occupancyIndex;
+    @Mock
+    private RentalCalendar rentalCalendar;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private RentalService rentalService;
+
+    @BeforeEach
+    void setUp() {
+        rentalService = new RentalService(rentalDao, rentalBookingDao, balanceDao, transactionManager,
+                occupancyIndex, rentalCalendar, eventPublisher);
+    }
+
+    @Test
+    void bookingMissingFromCalendarStillBlocksRent() {
+        // календарь узла ещё не знает о брони, сделанной на другом узле
+        when(rentalCalendar.isFree(eq(7), any(), any())).thenReturn(true);
+        when(rentalBookingDao.lockListing(7)).thenReturn(Optional.of(new RentalBookingDao.Listing(10, 1)));
+        when(rentalBookingDao.overlaps(eq(7), any(), any())).thenReturn(true);
+
+        assertThatThrownBy(() -> rentalService.rentSkin(3, 7, 2)).isInstanceOf(BadRequestException.class);
+        verify(rentalDao, never()).rentSkin(anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    void bulkRentLocksListingsInIdOrderAndStopsOnOverlap() {
+        when(rentalDao.findTerms(any())).thenReturn(Map.of(
+                9, new RentalDao.Terms(10, 5, 1),
+                4, new RentalDao.Terms(10, 5, 1)));
+        when(rentalCalendar.isFree(anyInt(), any(), any())).thenReturn(true);
+        when(balanceDao.checkBalance(3, 40)).thenReturn(true);
+        when(rentalBookingDao.overlaps(eq(4), any(), any())).thenReturn(false);
+        when(rentalBookingDao.overlaps(eq(9), any(), any())).thenReturn(true);
+
+        BulkRentRequestDto req = new BulkRentRequestDto();
+        req.setRenterId(3);
+        req.setItems(List.of(item(9, 2), item(4, 2)));
+
+        BulkRentResultDto result = rentalService.rentBulk(req);
+
+        InOrder order = inOrder(rentalBookingDao);
+        order.verify(rentalBookingDao).lockListing(4);
+        order.verify(rentalBookingDao).lockListing(9);
+        assertThat(result.isSuccess()).isFalse();
+        assertThat(result.getRented()).isZero();
+        verify(rentalDao, never()).rentSkin(anyInt(), anyInt(), anyInt());
+    }
+
+    private static BulkRentRequestDto.Item item(int announcementId, int days) {
+        BulkRentRequestDto.Item item = new BulkRentRequestDto.Item();
+        item.setAnnouncementId(announcementId);
+        item.setDays(days);
+        return item;
+    }
+}